@@ -0,0 +1,10 @@
+package cn.zzu.bench;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link EchoService} 的异步版本，调用方不阻塞，结果在 event loop 线程中完成
+ */
+public interface AsyncEchoService {
+    CompletableFuture<Object> echo(Object o);
+}
@@ -0,0 +1,147 @@
+package cn.zzu.bench;
+
+import cn.zzu.ss.core.Bytes;
+import cn.zzu.ss.core.DirectBytes;
+import cn.zzu.ss.core.SerialSink;
+import cn.zzu.ss.core.SerialSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes 与 DirectBytes 的基本读写，每次操作读写 Models.SIZE 个值。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BytesBenchmark {
+    private static final String ASCII = "cn.zzu.ss.core.Serializer";
+    private static final String UTF8 = "序列化与反序列化";
+
+    @Param({"heap", "direct"})
+    private String kind;
+
+    private Bytes heap;
+    private DirectBytes direct;
+    private SerialSink out;
+    private SerialSource in;
+    private int[] ints;
+
+    @Setup
+    public void setUp() {
+        heap = Bytes.newBytes();
+        direct = Bytes.newDirectBytes();
+        ints = new int[Models.SIZE];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i * 31;
+        }
+        if ("heap".equals(kind)) {
+            out = heap;
+            in = heap;
+        } else {
+            out = direct;
+            in = direct;
+        }
+        // 供读取的数据，每次读之前回到开头
+        for (int v : ints) {
+            out.writeInt(v);
+        }
+        if (in == heap) {
+            heap.mark();
+        } else {
+            direct.mark();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        direct.release();
+    }
+
+    @Benchmark
+    public SerialSink writeInt() {
+        discard();
+        for (int v : ints) {
+            out.writeInt(v);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public SerialSink writeLong() {
+        discard();
+        for (int v : ints) {
+            out.writeLong(v);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public SerialSink writeDouble() {
+        discard();
+        for (int v : ints) {
+            out.writeDouble(v);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public SerialSink writeLen() {
+        discard();
+        for (int v : ints) {
+            out.writeLen(v);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public SerialSink writeAsciiString() throws IOException {
+        discard();
+        out.writeString(ASCII);
+        return out;
+    }
+
+    @Benchmark
+    public SerialSink writeUtf8String() throws IOException {
+        discard();
+        out.writeString(UTF8);
+        return out;
+    }
+
+    @Benchmark
+    public Bytes writeInts() {
+        heap.discard();
+        heap.writeInts(ints);
+        return heap;
+    }
+
+    @Benchmark
+    public int readInt() {
+        rewind();
+        int sum = 0;
+        for (int i = 0; i < ints.length; i++) {
+            sum += in.readInt();
+        }
+        return sum;
+    }
+
+    private void discard() {
+        if (out == heap) {
+            heap.discard();
+        } else {
+            direct.discard();
+        }
+    }
+
+    private void rewind() {
+        if (in == heap) {
+            heap.reset();
+        } else {
+            direct.reset();
+        }
+    }
+}
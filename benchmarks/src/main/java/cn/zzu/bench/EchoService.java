@@ -0,0 +1,8 @@
+package cn.zzu.bench;
+
+/**
+ * RPC 基准测试的服务，原样返回参数，只测量调用与编解码的开销
+ */
+public interface EchoService {
+    Object echo(Object o);
+}
@@ -0,0 +1,102 @@
+package cn.zzu.bench;
+
+import test.Family;
+import test.Flat;
+import test.Man;
+import test.Woman;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试使用的对象，取自测试模型。
+ * <p>
+ * 注意 Person 没有实现 Serializable，ObjectOutputStream 不会写出 Man/Woman 继承的 name 与 age，
+ * 与 ObjectOutputStream 对比时以 flat、数组为准。
+ */
+final class Models {
+    static final int SIZE = 1000;
+
+    private Models() {
+    }
+
+    static Object of(String shape) {
+        switch (shape) {
+            case "man":
+                return man(22);
+            case "family":
+                return family();
+            case "flat":
+                return new Flat(123);
+            case "ints":
+                return ints();
+            case "doubles":
+                return doubles();
+            case "list":
+                return list();
+            case "map":
+                return map();
+            default:
+                throw new IllegalArgumentException("unknown shape: " + shape);
+        }
+    }
+
+    static Man man(int age) {
+        Man man = new Man();
+        man.setName("Tom");
+        man.setAge(age);
+        man.setStrength(80);
+        return man;
+    }
+
+    static Woman woman(int age) {
+        Woman woman = new Woman();
+        woman.setName("Jane");
+        woman.setAge(age);
+        woman.setSkill(66);
+        return woman;
+    }
+
+    private static Family family() {
+        Family family = new Family(man(40), woman(38));
+        family.addChild(man(12));
+        family.addChild(woman(8));
+        family.addElder(man(70));
+        family.addElder(woman(68));
+        return family;
+    }
+
+    private static int[] ints() {
+        int[] ints = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            ints[i] = i * 31;
+        }
+        return ints;
+    }
+
+    private static double[] doubles() {
+        double[] doubles = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            doubles[i] = i / 7d;
+        }
+        return doubles;
+    }
+
+    private static List<Flat> list() {
+        List<Flat> list = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            list.add(new Flat(i));
+        }
+        return list;
+    }
+
+    private static Map<Integer, Flat> map() {
+        Map<Integer, Flat> map = new HashMap<>(SIZE * 2);
+        for (int i = 0; i < SIZE; i++) {
+            map.put(i, new Flat(i));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,72 @@
+package cn.zzu.bench;
+
+import cn.zzu.ss.core.Deserializer;
+import cn.zzu.ss.core.Serializer;
+import org.openjdk.jmh.annotations.*;
+import test.Man;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大集合分段并行写出与读取随线程数的扩展情况，threads 为 0 时不分段，即原先的单线程写出与读取。
+ * 线程数超过本机的核数时没有意义，可用 -p threads=... 按机器调整。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSerializeBenchmark {
+
+    @Param({"0", "1", "2", "4", "8", "16", "32"})
+    private int threads;
+
+    @Param({"1000000"})
+    private int size;
+
+    private List<Man> value;
+    private ForkJoinPool pool;
+    private Serializer serializer;
+    private Deserializer deserializer;
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        value = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            value.add(Models.man(i % 90));
+        }
+        serializer = new Serializer();
+        deserializer = new Deserializer();
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            serializer.setParallel(pool, 16 * 1024);
+            deserializer.setParallel(pool);
+        }
+        serializer.writeObject(value);
+        data = serializer.getSerialData();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Serializer write() {
+        serializer.reset();
+        serializer.writeObject(value);
+        return serializer;
+    }
+
+    @Benchmark
+    public Object read() {
+        return deserializer.reuse(data, 0, data.length).readObject();
+    }
+}
@@ -0,0 +1,97 @@
+package cn.zzu.bench;
+
+import cn.zzu.rpc.ExecutionPolicy;
+import cn.zzu.rpc.RpcClient;
+import cn.zzu.rpc.RpcRegistry;
+import cn.zzu.rpc.RpcServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机回环上的同步 RPC 往返：代理调用、编解码、网络收发与结果唤醒。
+ * asyncBatch 由一个线程连续发出 BATCH 个异步调用再等待全部完成，不为每个调用占用线程。
+ * executor 为 shared 时服务方法在服务端的共用线程池中执行，比较 event loop 线程与业务线程之间的交接开销。
+ * 服务端在守护线程中运行，随 fork 出的 JVM 一起退出。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RpcBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final long START_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final int BATCH = 1000;
+
+    @Param("18888")
+    private int port;
+
+    @Param({"man", "flat", "ints"})
+    private String shape;
+
+    @Param({"io", "shared"})
+    private String executor;
+
+    private Object value;
+    private EchoService echo;
+    private AsyncEchoService asyncEcho;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        value = Models.of(shape);
+        RpcRegistry registry = new RpcRegistry(HOST, port);
+
+        RpcServer server = RpcServer.create(registry);
+        ExecutionPolicy policy = "shared".equals(executor) ? ExecutionPolicy.shared() : ExecutionPolicy.ioThread();
+        server.export(EchoService.class, o->o, policy);
+        server.export(AsyncEchoService.class, CompletableFuture::completedFuture, policy);
+        Thread serverThread = new Thread(()->{
+            try {
+                server.start();
+            } catch (InterruptedException ignored) {
+            }
+        }, "rpc-benchmark-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        awaitServer();
+
+        RpcClient client = RpcClient.create(registry);
+        client.connect();
+        echo = client.referTo(EchoService.class);
+        asyncEcho = client.referTo(AsyncEchoService.class);
+    }
+
+    private void awaitServer() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        while (true) {
+            try (Socket ignored = new Socket(HOST, port)) {
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("rpc server didn't start on port " + port, e);
+                }
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return echo.echo(value);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object asyncBatch() {
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            calls[i] = asyncEcho.echo(value);
+        }
+        return CompletableFuture.allOf(calls).join();
+    }
+}
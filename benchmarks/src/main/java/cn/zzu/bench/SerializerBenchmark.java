@@ -0,0 +1,76 @@
+package cn.zzu.bench;
+
+import cn.zzu.ss.core.Deserializer;
+import cn.zzu.ss.core.Serializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializer/Deserializer 与 ObjectOutputStream/ObjectInputStream 的对比。
+ * 两边都复用输出缓冲区，ss 额外复用 Serializer 与 Deserializer 实例。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+    @Param({"man", "family", "flat", "ints", "doubles", "list", "map"})
+    private String shape;
+
+    private Object value;
+    private Serializer serializer;
+    private Deserializer deserializer;
+    private byte[] ssData;
+    private ByteArrayOutputStream jdkOut;
+    private byte[] jdkData;
+
+    @Setup
+    public void setUp() throws IOException {
+        value = Models.of(shape);
+        serializer = new Serializer();
+        deserializer = new Deserializer();
+        serializer.writeObject(value);
+        ssData = serializer.getSerialData();
+
+        jdkOut = new ByteArrayOutputStream(ssData.length * 2);
+        jdkWrite();
+        jdkData = jdkOut.toByteArray();
+    }
+
+    @Benchmark
+    public Serializer ssWrite() {
+        serializer.reset();
+        serializer.writeObject(value);
+        return serializer;
+    }
+
+    @Benchmark
+    public Object ssRead() {
+        return deserializer.reuse(ssData, 0, ssData.length).readObject();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream jdkWrite() throws IOException {
+        jdkOut.reset();
+        try (ObjectOutputStream oos = new ObjectOutputStream(jdkOut)) {
+            oos.writeObject(value);
+        }
+        return jdkOut;
+    }
+
+    @Benchmark
+    public Object jdkRead() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(jdkData))) {
+            return ois.readObject();
+        }
+    }
+}
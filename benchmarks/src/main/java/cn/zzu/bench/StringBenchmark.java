@@ -0,0 +1,73 @@
+package cn.zzu.bench;
+
+import cn.zzu.ss.core.Bytes;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes 内置的 UTF-8 编解码与 JDK 字符集实现的对比，短串为类名一类的标识符，长串约 1KB。
+ * jdk* 即 Bytes 原先的做法：getBytes("UTF-8") 之后拷贝进缓冲区，new String(data, off, len, "UTF-8") 读出。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringBenchmark {
+
+    @Param({"ascii-short", "ascii-long", "utf8-short", "utf8-long"})
+    private String text;
+
+    private String value;
+    private Bytes out;
+    private Bytes in;
+
+    @Setup
+    public void setUp() throws IOException {
+        String unit = text.startsWith("ascii") ? "cn.zzu.ss.core.Serializer" : "序列化与反序列化 serializer";
+        StringBuilder sb = new StringBuilder(unit);
+        while (text.endsWith("long") && sb.length() < 1024) {
+            sb.append(unit);
+        }
+        value = sb.toString();
+        out = Bytes.newBytes();
+        // 供读取的数据，每次读之前回到开头
+        in = Bytes.newBytes();
+        in.writeString(value);
+        in.mark();
+    }
+
+    @Benchmark
+    public Bytes ssWrite() throws IOException {
+        out.discard();
+        out.writeString(value);
+        return out;
+    }
+
+    @Benchmark
+    public Bytes jdkWrite() throws IOException {
+        out.discard();
+        byte[] str = value.getBytes("UTF-8");
+        out.writeLen(str.length);
+        out.write(str, 0, str.length);
+        return out;
+    }
+
+    @Benchmark
+    public String ssRead() throws IOException {
+        in.reset();
+        return in.readString();
+    }
+
+    @Benchmark
+    public String jdkRead() throws IOException {
+        in.reset();
+        int len = in.readLen();
+        String s = new String(in.getData(), in.read(), len, "UTF-8");
+        in.skipBytes(len);
+        return s;
+    }
+}
@@ -98,7 +98,7 @@ public final class ChannelPool {
             ChannelPipeline pipeline = ch.pipeline();
             pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4))
                     .addLast("frameEncoder", new LengthFieldPrepender(4)).addLast("packetDecoder", new PacketDecoder())
-                    .addLast("packetEncoder", new PacketEncoder()).addLast(new ReadTimeoutHandler(50))
+                    .addLast("packetEncoder", new PacketEncoder(registry.isCompact())).addLast(new ReadTimeoutHandler(50))
                     .addLast("heartbeatReqHandler", new HeartbeatClientHandler())
                     .addLast("invocationReqHandler", new InvocationClientHandler());
         }
@@ -1,13 +1,23 @@
 package cn.zzu.rpc;
 
+import cn.zzu.ss.core.SessionDictionary;
 import io.netty.channel.Channel;
 import io.netty.util.AttributeKey;
 
 import java.util.Map;
 
-class ChannelUtils {
+public class ChannelUtils {
     public static final int MESSAGE_LENGTH = 16;
     public static final AttributeKey<Map<Integer, Object>> DATA_MAP_ATTRIBUTE_KEY = new AttributeKey<>("dataMap");
+    /* 连接上等待结果的调用，见 InvocationFutureRepo#of */
+    public static final AttributeKey<InvocationFutureRepo> FUTURES_ATTRIBUTE_KEY = new AttributeKey<>("futures");
+    /* 合并写出请求，见 WriteBatcher#of */
+    public static final AttributeKey<WriteBatcher> WRITER_ATTRIBUTE_KEY = new AttributeKey<>("writer");
+    /*
+     * 连接级共享字典。服务端在 channelActive 时安装并随 HEARTBEAT_REQ 握手包发给客户端，
+     * 客户端在解码握手包时安装，此后双方的包体都以字典中的 id 引用类与字符串
+     */
+    public static final AttributeKey<SessionDictionary> DICTIONARY_ATTRIBUTE_KEY = new AttributeKey<>("sessionDictionary");
 
     public static <T> void putCallback2DataMap(Channel channel, int seq, T callback) {
         channel.attr(DATA_MAP_ATTRIBUTE_KEY).get().put(seq, callback);
@@ -16,4 +26,12 @@ class ChannelUtils {
     public static <T> T removeCallback(Channel channel, int seq) {
         return (T) channel.attr(DATA_MAP_ATTRIBUTE_KEY).get().remove(seq);
     }
+
+    public static SessionDictionary dictionary(Channel channel) {
+        return channel.attr(DICTIONARY_ATTRIBUTE_KEY).get();
+    }
+
+    public static void installDictionary(Channel channel, SessionDictionary dictionary) {
+        channel.attr(DICTIONARY_ATTRIBUTE_KEY).set(dictionary);
+    }
 }
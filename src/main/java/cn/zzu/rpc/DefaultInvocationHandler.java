@@ -1,48 +1,96 @@
 package cn.zzu.rpc;
 
 import cn.zzu.rpc.netty.Packet;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.socket.SocketChannel;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 返回类型为 {@link CompletableFuture} 的方法异步调用：发出请求后立即返回，结果由
+ * {@link cn.zzu.rpc.netty.InvocationClientHandler} 在 event loop 线程中完成，不占用等待的线程；
+ * 其余方法阻塞到结果返回。请求经由 {@link WriteBatcher} 写出，并发的调用合并 flush。
+ * <p>
+ * 每个调用的期限取自方法上的 {@link InvokeTimeout}，未标注时使用构造时给出的默认期限，到期抛出 {@link RpcTimeoutException}。
+ */
 public class DefaultInvocationHandler implements InvocationHandler {
     private String identifier;
     private Class<?> i;
-    private SocketChannel channel;
+    private Channel channel;
+    private long timeout;
+    /* 方法 -> 调用期限，毫秒 */
+    private ConcurrentHashMap<Method, Long> timeouts = new ConcurrentHashMap<>();
 
-    public DefaultInvocationHandler(final String identifier, final Class<?> i, final SocketChannel channel) {
+    public DefaultInvocationHandler(final String identifier, final Class<?> i, final Channel channel) {
+        this(identifier, i, channel, RpcRegistry.DEFAULT_INVOKE_TIMEOUT);
+    }
+
+    public DefaultInvocationHandler(final String identifier, final Class<?> i, final Channel channel,
+                                    final long timeout) {
         this.identifier = identifier;
         this.i = i;
         this.channel = channel;
+        this.timeout = timeout;
     }
 
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) {
         Invocation invocation = new Invocation(identifier, i, method, args);
-        Packet packet = Packet.invocation(invocation);
-        InvocationFutureRepo.getInstance().put(invocation.getInvocationID());
-        channel.writeAndFlush(packet).addListener((ChannelFutureListener) future->{
-            if (!future.isSuccess()) {
-                rpcSendFailed(invocation);
+        InvocationFutureRepo repo = InvocationFutureRepo.of(channel);
+        CompletableFuture<Object> promise = CompletableFuture.class.isAssignableFrom(method.getReturnType())
+                ? new CompletableFuture<>() : null;
+        InvocationFuture future;
+        try {
+            future = repo.put(timeoutOf(method));
+        } catch (RpcException e) {
+            if (promise == null) {
+                throw e;
+            }
+            // 异步调用的失败一律由 CompletableFuture 给出
+            promise.completeExceptionally(e);
+            return promise;
+        }
+        int invocationID = future.getInvocationID();
+        if (promise != null) {
+            future.bind(promise);
+        }
+        WriteBatcher.of(channel).write(Packet.invocation(invocationID, invocation)).addListener((ChannelFutureListener) f->{
+            if (!f.isSuccess()) {
+                rpcSendFailed(repo, invocationID, invocation);
             }
         });
 
-        Object o = InvocationFutureRepo.getInstance().get(invocation.getInvocationID()).get();
+        if (promise != null) {
+            return promise;
+        }
+        Object o = future.get();
         if (o instanceof Exception) {
             throw (RpcException) o;
         }
         return o;
     }
 
-    private void rpcSendFailed(Invocation invocation) {
-        InvocationFutureRepo.getInstance().get(invocation.getInvocationID()).cancel();
-        throw new RpcException(String
-                .format("Failed call: %s - %s", invocation.getIdentifier(), invocation.getMethod()));
+    private long timeoutOf(final Method method) {
+        Long t = timeouts.get(method);
+        if (t == null) {
+            InvokeTimeout annotation = method.getAnnotation(InvokeTimeout.class);
+            t = annotation != null && annotation.value() > 0 ? annotation.value() : timeout;
+            timeouts.put(method, t);
+        }
+        return t;
+    }
+
+    /*
+     * 在 event loop 线程中执行，失败作为调用的结果交给等待的线程或 CompletableFuture
+     */
+    private void rpcSendFailed(InvocationFutureRepo repo, int invocationID, Invocation invocation) {
+        InvocationFuture future = repo.remove(invocationID);
+        if (future != null) {
+            future.set(new RpcException(String
+                    .format("Failed call: %s - %s", invocation.getIdentifier(), invocation.getMethod())));
+        }
     }
 }
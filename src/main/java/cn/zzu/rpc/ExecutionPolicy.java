@@ -0,0 +1,75 @@
+package cn.zzu.rpc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 服务方法在服务端的执行位置，导出服务时给出，见 {@link RpcServer#export(String, Class, Object, String[], ExecutionPolicy)}：
+ * <ul>
+ * <li>{@link #ioThread()}：在读到调用的 event loop 线程中执行，只适合不阻塞的简单方法，也是未指定时的默认值</li>
+ * <li>{@link #shared()}：在服务端共用的有界线程池中执行，见 {@link RpcServer#setSharedPool(int, int)}</li>
+ * <li>{@link #dedicated(int, int)}：在服务独占的线程池中执行，慢服务占满自己的队列也不影响其它服务</li>
+ * </ul>
+ * 在线程池中执行的调用由该线程写回结果；队列已满时调用立即以失败返回。
+ * {@link #method(String, ExecutionPolicy)} 为个别方法指定不同的执行位置，同名的重载方法共用一个。
+ */
+public final class ExecutionPolicy {
+    enum Kind {
+        IO_THREAD, SHARED, DEDICATED
+    }
+
+    private final Kind kind;
+    private final int threads;
+    private final int queueSize;
+    /* 方法名 -> 该方法的执行位置 */
+    private final Map<String, ExecutionPolicy> methods = new HashMap<>();
+
+    private ExecutionPolicy(final Kind kind, final int threads, final int queueSize) {
+        this.kind = kind;
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    public static ExecutionPolicy ioThread() {
+        return new ExecutionPolicy(Kind.IO_THREAD, 0, 0);
+    }
+
+    public static ExecutionPolicy shared() {
+        return new ExecutionPolicy(Kind.SHARED, 0, 0);
+    }
+
+    /**
+     * @param threads   独占线程池的线程数
+     * @param queueSize 等待执行的调用的上限
+     */
+    public static ExecutionPolicy dedicated(final int threads, final int queueSize) {
+        if (threads <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException(String.format("invalid pool: %d threads, %d queued", threads, queueSize));
+        }
+        return new ExecutionPolicy(Kind.DEDICATED, threads, queueSize);
+    }
+
+    /**
+     * 方法 method 在 policy 指定的位置执行，policy 自身的方法设置被忽略
+     */
+    public ExecutionPolicy method(final String method, final ExecutionPolicy policy) {
+        methods.put(method, policy);
+        return this;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getQueueSize() {
+        return queueSize;
+    }
+
+    Map<String, ExecutionPolicy> getMethods() {
+        return methods;
+    }
+}
@@ -1,66 +1,117 @@
 package cn.zzu.rpc;
 
+import io.netty.util.Timeout;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
 /**
- * 这个类有且只会有两个线程访问：一个是get时wait掉的线程，一个是接收到结果时写入结果的线程。
+ * 这个类有且只会有两个线程访问：一个是get时park掉的线程，一个是接收到结果时写入结果的线程。
+ * 绑定了 {@link CompletableFuture} 的异步调用没有等待的线程，结果直接完成该 CompletableFuture。
+ * 结果由 {@link InvocationFutureRepo#remove(int)} 取出后写入，此时槽位已经释放，因而只写入一次，写入不会阻塞。
+ * 到期未返回的调用由 {@link InvocationFutureRepo} 的时间轮写入 {@link RpcTimeoutException}。
  */
 public final class InvocationFuture {
-    private final Object monitor = new Object();
-    private Object result;
-    private volatile boolean writable = result == null;
+    /* 尚无结果，调用的结果本身可以为 null */
+    private static final Object NONE = new Object();
+    private volatile Object result = NONE;
+    /* park 在 get() 中的线程 */
+    private volatile Thread waiter;
     private InvocationFutureRepo futureRepo;
+    private int invocationID;
+    /* 在 InvocationFutureRepo 中的槽位 */
+    private int slot;
+    /* 到期的定时，结果先于定时写入时为 null，到期的定时发现槽位已释放即结束 */
+    private volatile Timeout deadline;
+    /* 异步调用的结果，为 null 时由 get() 等待结果 */
+    private volatile CompletableFuture<Object> promise;
 
     public InvocationFuture(final InvocationFutureRepo futureRepo) {
         this.futureRepo = futureRepo;
     }
 
+    public int getInvocationID() {
+        return invocationID;
+    }
+
+    void setInvocationID(final int invocationID) {
+        this.invocationID = invocationID;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(final int slot) {
+        this.slot = slot;
+    }
+
+    void setDeadline(final Timeout deadline) {
+        this.deadline = deadline;
+    }
+
     public boolean isWritable() {
-        return writable;
+        return result == NONE;
     }
 
     public boolean isReadable() {
-        return !writable;
+        return result != NONE;
     }
 
+    /**
+     * 等待到结果写入为止，期限由时间轮保证；等待中被中断时取消调用并抛出 {@link RpcException}
+     */
     public Object get() {
-        synchronized (monitor) {
-            Object res;
-            if (this.result == null) {
-                try {
-                    monitor.wait(1000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+        if (result == NONE) {
+            waiter = Thread.currentThread();
+            while (result == NONE) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    waiter = null;
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    throw new RpcException("Interrupted while waiting for invocation " + invocationID);
                 }
             }
-            res = result;
-            result = null;
-            writable = true;
-            futureRepo.reuse(this);
-            monitor.notify();
-            return res;
+            waiter = null;
         }
+        return result;
+    }
+
+    /**
+     * 异步调用：结果写入时完成 promise，异常的结果使其异常完成
+     */
+    void bind(final CompletableFuture<Object> promise) {
+        this.promise = promise;
     }
 
     public void set(final Object result) {
-        synchronized (monitor) {
-            if (this.result != null) {
-                try {
-                    monitor.wait(1000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        Timeout t = deadline;
+        if (t != null) {
+            t.cancel();
+        }
+        this.result = result;
+        CompletableFuture<Object> p = promise;
+        if (p != null) {
+            promise = null;
+            if (result instanceof Throwable) {
+                p.completeExceptionally((Throwable) result);
+            } else {
+                p.complete(result);
             }
-            this.result = result;
-            writable = false;
-            monitor.notify();
+            return;
+        }
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
         }
     }
 
     public void cancel() {
-        synchronized (monitor) {
-            if (result != null) {
-                result = null;
-            }
-            futureRepo.reuse(this);
+        Timeout t = deadline;
+        if (t != null) {
+            t.cancel();
         }
+        futureRepo.release(this);
     }
 }
@@ -1,49 +1,183 @@
 package cn.zzu.rpc;
 
-import java.util.NoSuchElementException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Attribute;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 一个连接上等待结果的调用。调用号由连接内递增的序号产生，按 2 的幂次取模落在环形的槽位中，
+ * 登记与取出都是对单个槽位的 CAS，不经过全局的表，也不加锁。
+ * <p>
+ * 环从 {@link #MIN_CAPACITY} 个槽位开始，全部被占用时加倍，直到创建时给出的上限，见
+ * {@link RpcRegistry#setMaxPendingInvocations(int)}。槽位按 MIN_CAPACITY 个一块在首次用到时分配，
+ * 已分配的块不再移动，扩容不需要迁移已登记的调用；取出时依次按当前及之前的各个容量取模查找。
+ * <p>
+ * 调用号相隔环的大小的两个调用共用一个槽位，槽位仍被占用时跳过该调用号；取出时比对完整的调用号，
+ * 超时后才到达的结果不会交给占用同一槽位的新调用。连接关闭时全部未完成的调用立即以 {@link RpcException} 结束。
+ * <p>
+ * 调用的期限由所有连接共用的一个时间轮管理，登记与到期都是 O(1) 的，不为每个调用创建定时线程；
+ * 到期时取出调用，释放槽位并写入 {@link RpcTimeoutException}。
+ */
 public final class InvocationFutureRepo {
 
-    private static final int CACHE_SIZE = 2048;
-    private static InvocationFutureRepo repo = new InvocationFutureRepo();
-    private BlockingQueue<InvocationFuture> usableFutures;
-    private ConcurrentHashMap<Integer, InvocationFuture> usedFutures;
+    static final int MIN_CAPACITY = 4096;
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+    /* 调用期限的精度，10ms 一格 */
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(new DefaultThreadFactory("rpc-timeout", true),
+            10, TimeUnit.MILLISECONDS);
+    private static final AtomicIntegerFieldUpdater<InvocationFutureRepo> MASK_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(InvocationFutureRepo.class, "mask");
+    private final IDCreator ids = new IDCreator(0);
+    /* 槽位按 MIN_CAPACITY 个一块，首次用到时分配 */
+    private final AtomicReferenceArray<AtomicReferenceArray<InvocationFuture>> chunks;
+    /* 当前环的大小 - 1，只增不减 */
+    private volatile int mask = MIN_CAPACITY - 1;
+    private final Channel channel;
 
-    private InvocationFutureRepo() {
-        usableFutures = new ArrayBlockingQueue<>(CACHE_SIZE);
-        usedFutures = new ConcurrentHashMap<>();
+    private InvocationFutureRepo(final Channel channel, final int capacity) {
+        this.channel = channel;
+        this.chunks = new AtomicReferenceArray<>(capacity >>> CHUNK_SHIFT);
     }
 
-    public static InvocationFutureRepo getInstance() {
-        return repo;
+    /**
+     * channel 上的调用表，首次访问时以默认的容量上限创建，并在 channel 关闭时结束其中全部的调用
+     */
+    public static InvocationFutureRepo of(final Channel channel) {
+        return of(channel, DEFAULT_CAPACITY);
     }
 
-    public void put(Integer t) {
-        InvocationFuture f = usableFutures.poll();
-        if (f == null) {
-            f = new InvocationFuture(this);
+    /**
+     * channel 上的调用表，首次访问时创建，同时等待结果的调用至多 maxPending 个（向上取整到 2 的幂次，
+     * 至少 {@link #MIN_CAPACITY}）；调用表已经存在时 maxPending 被忽略
+     */
+    public static InvocationFutureRepo of(final Channel channel, final int maxPending) {
+        Attribute<InvocationFutureRepo> attribute = channel.attr(ChannelUtils.FUTURES_ATTRIBUTE_KEY);
+        InvocationFutureRepo repo = attribute.get();
+        if (repo != null) {
+            return repo;
+        }
+        InvocationFutureRepo created = new InvocationFutureRepo(channel, capacityOf(maxPending));
+        repo = attribute.setIfAbsent(created);
+        if (repo != null) {
+            return repo;
         }
-        usedFutures.put(t, f);
+        channel.closeFuture().addListener((ChannelFutureListener) created::channelClosed);
+        return created;
     }
 
-    /*
-     * t -> invocationID
-     **/
-    public InvocationFuture get(Integer t) {
-        InvocationFuture f = usedFutures.get(t);
-        if (f == null) throw new NoSuchElementException();
-        return f;
+    /**
+     * 为新的调用分配调用号与槽位，timeoutMillis 毫秒后仍未得到结果时以 {@link RpcTimeoutException} 结束；
+     * 环已满时加倍，未完成的调用达到上限时抛出 {@link RpcException}
+     */
+    public InvocationFuture put(final long timeoutMillis) {
+        InvocationFuture f = new InvocationFuture(this);
+        for (; ; ) {
+            int m = mask;
+            for (int i = 0; i <= m; i++) {
+                int id = (int) ids.next();
+                int index = id & m;
+                f.setInvocationID(id);
+                f.setSlot(index);
+                if (chunk(index, true).compareAndSet(index & (MIN_CAPACITY - 1), null, f)) {
+                    f.setDeadline(TIMER.newTimeout(t->expire(id, timeoutMillis), timeoutMillis, TimeUnit.MILLISECONDS));
+                    return f;
+                }
+            }
+            if (!grow(m)) {
+                throw new RpcException(String.format("Too many pending invocations on %s", channel));
+            }
+        }
+    }
+
+    /**
+     * 取出调用号对应的调用，并释放其槽位；调用已经结束（超时、取消或连接关闭）时返回 null
+     */
+    public InvocationFuture remove(final int invocationID) {
+        // 调用登记时环可能更小，依次按之前的各个容量查找
+        for (int m = mask; m >= MIN_CAPACITY - 1; m >>>= 1) {
+            int index = invocationID & m;
+            AtomicReferenceArray<InvocationFuture> chunk = chunk(index, false);
+            InvocationFuture f = chunk == null ? null : chunk.get(index & (MIN_CAPACITY - 1));
+            if (f != null && f.getInvocationID() == invocationID) {
+                return chunk.compareAndSet(index & (MIN_CAPACITY - 1), f, null) ? f : null;
+            }
+        }
+        return null;
     }
 
     /*
      * package-private
      *
+     * 调用不再等待结果时释放其槽位
      **/
-    void reuse(InvocationFuture future) {
-        usedFutures.values().remove(future);
-        usableFutures.offer(future);
+    void release(final InvocationFuture future) {
+        int index = future.getSlot();
+        chunk(index, false).compareAndSet(index & (MIN_CAPACITY - 1), future, null);
+    }
+
+    private void expire(final int invocationID, final long timeoutMillis) {
+        InvocationFuture f = remove(invocationID);
+        if (f != null) {
+            f.set(new RpcTimeoutException(String
+                    .format("Invocation %d timed out after %dms on %s", invocationID, timeoutMillis, channel)));
+        }
+    }
+
+    private void channelClosed(final ChannelFuture closed) {
+        for (int c = 0; c < chunks.length(); c++) {
+            AtomicReferenceArray<InvocationFuture> chunk = chunks.get(c);
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < MIN_CAPACITY; i++) {
+                InvocationFuture f = chunk.get(i);
+                if (f != null && chunk.compareAndSet(i, f, null)) {
+                    f.set(new RpcException(String.format("Channel closed: %s", channel)));
+                }
+            }
+        }
+    }
+
+    /*
+     * 槽位 index 所在的块，create 为 false 时尚未分配的块返回 null
+     */
+    private AtomicReferenceArray<InvocationFuture> chunk(final int index, final boolean create) {
+        int c = index >>> CHUNK_SHIFT;
+        AtomicReferenceArray<InvocationFuture> chunk = chunks.get(c);
+        if (chunk == null && create) {
+            chunks.compareAndSet(c, null, new AtomicReferenceArray<>(MIN_CAPACITY));
+            chunk = chunks.get(c);
+        }
+        return chunk;
+    }
+
+    /*
+     * 环的大小为 m + 1 时全部槽位都被占用，加倍；已经达到上限时返回 false
+     */
+    private boolean grow(final int m) {
+        int grown = (m << 1) | 1;
+        if (grown >>> CHUNK_SHIFT >= chunks.length()) {
+            return mask != m;
+        }
+        MASK_UPDATER.compareAndSet(this, m, grown);
+        return true;
+    }
+
+    private static int capacityOf(final int maxPending) {
+        if (maxPending <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        if (maxPending > 1 << 30) {
+            throw new IllegalArgumentException("too many pending invocations: " + maxPending);
+        }
+        return Integer.highestOneBit(maxPending - 1) << 1;
     }
 }
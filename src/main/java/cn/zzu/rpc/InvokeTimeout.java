@@ -0,0 +1,16 @@
+package cn.zzu.rpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 服务接口方法的调用期限，单位为毫秒；未标注的方法使用 {@link RpcRegistry#getInvokeTimeout()}。
+ * 到期未返回的同步调用抛出 {@link RpcTimeoutException}，异步调用的 CompletableFuture 以其异常完成
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface InvokeTimeout {
+    long value();
+}
@@ -3,12 +3,21 @@ package cn.zzu.rpc;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public class Invoker<T> {
+    /* methodExecutors 中表示 event loop 线程的占位，ConcurrentHashMap 不能存放 null */
+    private static final Executor IO_THREAD = Runnable::run;
     private String identifier;
     private Class<T> tcl;
     private T target;
     private List<Method> exportedMethods;
+    /* 服务方法的执行线程池，为 null 时在 event loop 线程中执行 */
+    private Executor executor;
+    /* 方法名 -> 单独指定的执行线程池 */
+    private Map<String, Executor> methodExecutors = new ConcurrentHashMap<>();
 
     public Invoker(final String identifier, final Class<T> tcl, final T target, String[] exports) {
         if (identifier == null || tcl == null || target == null) throw new NullPointerException();
@@ -31,6 +40,35 @@ public class Invoker<T> {
         return target;
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 服务方法在 executor 中执行，null 表示在 event loop 线程中执行
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 方法 method 在 executor 中执行，null 表示在 event loop 线程中执行，不再使用服务的设置
+     */
+    public void setExecutor(final String method, final Executor executor) {
+        methodExecutors.put(method, executor == null ? IO_THREAD : executor);
+    }
+
+    /**
+     * 方法 method 的执行线程池，为 null 时在 event loop 线程中执行
+     */
+    public Executor executorOf(final String method) {
+        Executor e = methodExecutors.get(method);
+        if (e == null) {
+            return executor;
+        }
+        return e == IO_THREAD ? null : e;
+    }
+
     public Object invoke(Invocation invocation) throws InvocationTargetException, IllegalAccessException, NoSuchMethodException {
         checkInterface(invocation);
         Method method = tcl.getDeclaredMethod(invocation.getMethod(), invocation.getParamTypes());
@@ -90,23 +90,30 @@ public class RpcClient {
         return referTo(cl.getSimpleName(), cl);
     }
 
+    /**
+     * 服务接口中返回 {@link java.util.concurrent.CompletableFuture} 的方法为异步调用，立即返回，
+     * 结果到达时在 event loop 线程中完成；其余方法阻塞到结果返回。调用期限见 {@link InvokeTimeout}
+     */
     @SuppressWarnings("unchecked")
     public <T> T referTo(String identifier, Class<T> cl) {
         if (!cl.isInterface()) {
             throw RpcException.invalidServiceClass(cl);
         }
         return (T) Proxy.newProxyInstance(cl
-                .getClassLoader(), new Class[]{cl}, new DefaultInvocationHandler(identifier, cl, channel));
+                .getClassLoader(), new Class[]{cl}, new DefaultInvocationHandler(identifier, cl, channel, registry
+                .getInvokeTimeout()));
     }
 
     private class RpcClientInitializer extends ChannelInitializer<SocketChannel> {
 
         @Override
         protected void initChannel(final SocketChannel ch) {
+            // 以配置的上限创建调用表，之后的 InvocationFutureRepo#of 都取到这一个
+            InvocationFutureRepo.of(ch, registry.getMaxPendingInvocations());
             ChannelPipeline pipeline = ch.pipeline();
             pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4))
                     .addLast("frameEncoder", new LengthFieldPrepender(4)).addLast("packetDecoder", new PacketDecoder())
-                    .addLast("packetEncoder", new PacketEncoder()).addLast(new ReadTimeoutHandler(50))
+                    .addLast("packetEncoder", new PacketEncoder(registry.isCompact())).addLast(new ReadTimeoutHandler(50))
                     .addLast("heartbeatReqHandler", new HeartbeatClientHandler())
                     .addLast("invocationReqHandler", new InvocationClientHandler());
         }
@@ -2,9 +2,16 @@ package cn.zzu.rpc;
 
 public class RpcRegistry {
     private static final int DEFAULT_TIMEOUT = 60 * 1000; // 60s
+    static final long DEFAULT_INVOKE_TIMEOUT = 5 * 1000; // 5s
     private String host;
     private int port;
     private int timeout;
+    /* 发出的包体是否使用紧凑格式 */
+    private boolean compact;
+    /* 未标注 @InvokeTimeout 的方法的调用期限，毫秒 */
+    private long invokeTimeout = DEFAULT_INVOKE_TIMEOUT;
+    /* 连接上同时等待结果的调用的上限 */
+    private int maxPendingInvocations = InvocationFutureRepo.DEFAULT_CAPACITY;
 
     public RpcRegistry(final String host, final int port) {
         this(host, port, DEFAULT_TIMEOUT);
@@ -27,4 +34,47 @@ public class RpcRegistry {
         return timeout;
     }
 
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * 发出的包体使用紧凑格式，整数与长度写为变长整数，对端无需同样设置即可解码
+     */
+    public RpcRegistry setCompact(final boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+    public long getInvokeTimeout() {
+        return invokeTimeout;
+    }
+
+    /**
+     * 调用的默认期限，单位为毫秒，服务接口的方法可用 {@link InvokeTimeout} 单独指定
+     */
+    public RpcRegistry setInvokeTimeout(final long invokeTimeout) {
+        if (invokeTimeout <= 0) {
+            throw new IllegalArgumentException("invoke timeout must be positive: " + invokeTimeout);
+        }
+        this.invokeTimeout = invokeTimeout;
+        return this;
+    }
+
+    public int getMaxPendingInvocations() {
+        return maxPendingInvocations;
+    }
+
+    /**
+     * 一个连接上同时等待结果的调用的上限，向上取整到 2 的幂次，默认 65536。调用表从 4096 个槽位开始按需加倍，
+     * 达到上限后新的同步调用抛出 {@link RpcException}，异步调用的 CompletableFuture 以其异常完成
+     */
+    public RpcRegistry setMaxPendingInvocations(final int maxPendingInvocations) {
+        if (maxPendingInvocations <= 0) {
+            throw new IllegalArgumentException("max pending invocations must be positive: " + maxPendingInvocations);
+        }
+        this.maxPendingInvocations = maxPendingInvocations;
+        return this;
+    }
+
 }
@@ -4,6 +4,7 @@ import cn.zzu.rpc.netty.HeartbeatServerHandler;
 import cn.zzu.rpc.netty.InvocationServerHandler;
 import cn.zzu.rpc.netty.PacketDecoder;
 import cn.zzu.rpc.netty.PacketEncoder;
+import cn.zzu.ss.core.SessionDictionary;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -11,17 +12,33 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class RpcServer {
     private static final Logger logger = LoggerFactory.getLogger("RpcServer");
     private RpcRegistry registry;
+    private static final int DEFAULT_SHARED_QUEUE_SIZE = 1024;
     private ConcurrentHashMap<String, Invoker<?>> cachedInvoker;
+    private int sharedThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private int sharedQueueSize = DEFAULT_SHARED_QUEUE_SIZE;
+    /* ExecutionPolicy.shared() 的线程池，首次用到时创建 */
+    private ExecutorService sharedPool;
+    /* 服务端创建的全部线程池，start() 返回时关闭 */
+    private List<ExecutorService> pools = new CopyOnWriteArrayList<>();
 
     private RpcServer(final RpcRegistry registry) {
         this.registry = registry;
@@ -46,9 +63,27 @@ public class RpcServer {
         } finally {
             boss.shutdownGracefully();
             worker.shutdownGracefully();
+            for (ExecutorService pool : pools) {
+                pool.shutdown();
+            }
         }
     }
 
+    /**
+     * 共用线程池的大小，须在以 {@link ExecutionPolicy#shared()} 导出服务之前设置；
+     * 默认为核数的两倍个线程，最多 1024 个调用等待执行
+     */
+    public synchronized void setSharedPool(final int threads, final int queueSize) {
+        if (sharedPool != null) {
+            throw new IllegalStateException("shared pool is already in use");
+        }
+        if (threads <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException(String.format("invalid pool: %d threads, %d queued", threads, queueSize));
+        }
+        this.sharedThreads = threads;
+        this.sharedQueueSize = queueSize;
+    }
+
     public <T> void export(Class<T> cl, T service) {
         export(cl.getSimpleName(), cl, service, allPublicMethodName(cl));
     }
@@ -62,10 +97,82 @@ public class RpcServer {
     }
 
     public <T> void export(String identifier, Class<T> cl, T service, String[] methods) {
+        export(identifier, cl, service, methods, ExecutionPolicy.ioThread());
+    }
+
+    public <T> void export(Class<T> cl, T service, ExecutionPolicy policy) {
+        export(cl.getSimpleName(), cl, service, allPublicMethodName(cl), policy);
+    }
+
+    /**
+     * 导出服务，服务方法按 policy 在 event loop 线程、共用线程池或服务独占的线程池中执行
+     */
+    public <T> void export(String identifier, Class<T> cl, T service, String[] methods, ExecutionPolicy policy) {
         Invoker<T> invoker = new Invoker<>(identifier, cl, service, methods);
+        invoker.setExecutor(executorOf(identifier, policy));
+        for (Map.Entry<String, ExecutionPolicy> e : policy.getMethods().entrySet()) {
+            invoker.setExecutor(e.getKey(), executorOf(identifier + "-" + e.getKey(), e.getValue()));
+        }
         cachedInvoker.put(identifier, invoker);
     }
 
+    /*
+     * 执行位置对应的线程池，event loop 线程为 null
+     */
+    private ExecutorService executorOf(String name, ExecutionPolicy policy) {
+        switch (policy.getKind()) {
+            case SHARED:
+                synchronized (this) {
+                    if (sharedPool == null) {
+                        sharedPool = newPool("rpc-shared", sharedThreads, sharedQueueSize);
+                    }
+                    return sharedPool;
+                }
+            case DEDICATED:
+                return newPool("rpc-" + name, policy.getThreads(), policy.getQueueSize());
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * 定长的有界线程池，队列满时拒绝；守护线程不阻止进程退出
+     */
+    private ExecutorService newPool(String name, int threads, int queueSize) {
+        ExecutorService pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new DefaultThreadFactory(name, true));
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * 由已导出的服务生成连接级共享字典：调用相关的类型、服务标识、接口名与方法名
+     */
+    private SessionDictionary sessionDictionary() {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        Set<String> strings = new LinkedHashSet<>();
+        classes.add(Invocation.class);
+        for (Invoker<?> invoker : cachedInvoker.values()) {
+            Class<?> tcl = invoker.getTcl();
+            strings.add(invoker.getIdentifier());
+            strings.add(tcl.getCanonicalName());
+            for (Method method : tcl.getMethods()) {
+                strings.add(method.getName());
+                addShareable(classes, method.getReturnType());
+                for (Class<?> paramType : method.getParameterTypes()) {
+                    addShareable(classes, paramType);
+                }
+            }
+        }
+        return SessionDictionary.of(classes, strings);
+    }
+
+    private static void addShareable(Set<Class<?>> classes, Class<?> cl) {
+        if (!cl.isPrimitive() && !cl.isArray()) {
+            classes.add(cl);
+        }
+    }
+
     private String[] allPublicMethodName(Class<?> cl) {
         Method[] methods = cl.getMethods();
         String[] mNames = new String[methods.length];
@@ -88,8 +195,8 @@ public class RpcServer {
             ChannelPipeline pipeline = ch.pipeline();
             pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4))
                     .addLast("frameEncoder", new LengthFieldPrepender(4)).addLast("packetDecoder", new PacketDecoder())
-                    .addLast("packetEncoder", new PacketEncoder())
-                    .addLast("heartbeatRespHandler", new HeartbeatServerHandler())
+                    .addLast("packetEncoder", new PacketEncoder(registry.isCompact()))
+                    .addLast("heartbeatRespHandler", new HeartbeatServerHandler(sessionDictionary()))
                     .addLast("invocationRespHandler", new InvocationServerHandler(cachedInvoker));
         }
     }
@@ -0,0 +1,13 @@
+package cn.zzu.rpc;
+
+/**
+ * 调用在期限内没有得到结果，此后到达的结果被丢弃
+ *
+ * @see InvokeTimeout
+ */
+public class RpcTimeoutException extends RpcException {
+
+    public RpcTimeoutException(final String message) {
+        super(message);
+    }
+}
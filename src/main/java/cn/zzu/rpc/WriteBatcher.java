@@ -0,0 +1,94 @@
+package cn.zzu.rpc;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.Attribute;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 合并一个连接上的请求写出：调用线程只把包放进队列，由 event loop 在一次任务中写出队列中的全部包并 flush 一次，
+ * 同一时刻并发的多个调用共用一次系统调用与尽量少的 TCP 段。队列非空时最多提交一个写出任务。
+ * <p>
+ * 一次任务中每写出 MAX_BATCH 个包即 flush 一次，避免持续的调用使已写出的包长时间滞留在出站缓冲区。
+ */
+final class WriteBatcher implements Runnable {
+    private static final int MAX_BATCH = 128;
+
+    private final Channel channel;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    /* 是否已经提交了尚未开始的写出任务 */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private WriteBatcher(final Channel channel) {
+        this.channel = channel;
+    }
+
+    static WriteBatcher of(final Channel channel) {
+        Attribute<WriteBatcher> attribute = channel.attr(ChannelUtils.WRITER_ATTRIBUTE_KEY);
+        WriteBatcher batcher = attribute.get();
+        if (batcher != null) {
+            return batcher;
+        }
+        WriteBatcher created = new WriteBatcher(channel);
+        batcher = attribute.setIfAbsent(created);
+        return batcher != null ? batcher : created;
+    }
+
+    /**
+     * 写出 msg，在本轮写出任务结束前 flush
+     */
+    ChannelFuture write(final Object msg) {
+        ChannelPromise promise = channel.newPromise();
+        queue.offer(new Pending(msg, promise));
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                channel.eventLoop().execute(this);
+            } catch (RejectedExecutionException e) {
+                // event loop 已经关闭，连接不会再写出
+                scheduled.set(false);
+                fail(e);
+            }
+        }
+        return promise;
+    }
+
+    @Override
+    public void run() {
+        // 先复位再取，复位之后放入的包要么被本次取到，要么由放入的线程提交新的任务
+        scheduled.set(false);
+        int n = 0;
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            channel.write(p.msg, p.promise);
+            if (++n == MAX_BATCH) {
+                channel.flush();
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            channel.flush();
+        }
+    }
+
+    private void fail(final Throwable cause) {
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            p.promise.setFailure(cause);
+        }
+    }
+
+    private static final class Pending {
+        final Object msg;
+        final ChannelPromise promise;
+
+        Pending(final Object msg, final ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
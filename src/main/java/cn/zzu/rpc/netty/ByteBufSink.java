@@ -0,0 +1,75 @@
+package cn.zzu.rpc.netty;
+
+import cn.zzu.ss.core.SerialSink;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 将序列化数据直接写入 netty 的 ByteBuf。实例可通过 {@link #wrap(ByteBuf)} 重复使用。
+ */
+final class ByteBufSink implements SerialSink {
+    private ByteBuf buf;
+
+    ByteBufSink wrap(final ByteBuf buf) {
+        this.buf = buf;
+        return this;
+    }
+
+    void release() {
+        this.buf = null;
+    }
+
+    @Override
+    public void writeBoolean(final boolean v) {
+        buf.writeBoolean(v);
+    }
+
+    @Override
+    public void writeByte(final byte v) {
+        buf.writeByte(v);
+    }
+
+    @Override
+    public void writeShort(final int v) {
+        buf.writeShort(v);
+    }
+
+    @Override
+    public void writeChar(final int v) {
+        buf.writeChar(v);
+    }
+
+    @Override
+    public void writeInt(final int v) {
+        buf.writeInt(v);
+    }
+
+    @Override
+    public void writeLong(final long v) {
+        buf.writeLong(v);
+    }
+
+    @Override
+    public void writeFloat(final float v) {
+        buf.writeFloat(v);
+    }
+
+    @Override
+    public void writeDouble(final double v) {
+        buf.writeDouble(v);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+        buf.writeBytes(b, off, len);
+    }
+
+    @Override
+    public int writerIndex() {
+        return buf.writerIndex();
+    }
+
+    @Override
+    public void setInt(final int index, final int v) {
+        buf.setInt(index, v);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.zzu.rpc.netty;
+
+import cn.zzu.ss.core.SerialSource;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
+/**
+ * 直接从 netty 的 ByteBuf（包括 CompositeByteBuf）读取序列化数据，不把整帧拷贝成 byte[]。
+ * 实例可通过 {@link #wrap(ByteBuf)} 重复使用。
+ */
+final class ByteBufSource implements SerialSource {
+    private ByteBuf buf;
+
+    ByteBufSource wrap(final ByteBuf buf) {
+        this.buf = buf;
+        return this;
+    }
+
+    void release() {
+        this.buf = null;
+    }
+
+    @Override
+    public int readable() {
+        return buf.readableBytes();
+    }
+
+    @Override
+    public byte peekByte() {
+        return buf.getByte(buf.readerIndex());
+    }
+
+    @Override
+    public short peekShort() {
+        return buf.getShort(buf.readerIndex());
+    }
+
+    @Override
+    public int skipBytes(final int n) {
+        int index = buf.readerIndex() + n;
+        buf.readerIndex(index);
+        return index;
+    }
+
+    @Override
+    public boolean seekable() {
+        return true;
+    }
+
+    @Override
+    public long offset() {
+        return buf.readerIndex();
+    }
+
+    @Override
+    public void seek(final long offset) {
+        buf.readerIndex((int) offset);
+    }
+
+    @Override
+    public SerialSource slice(final int length) {
+        ByteBufSource view = new ByteBufSource().wrap(buf.slice(buf.readerIndex(), length));
+        buf.skipBytes(length);
+        return view;
+    }
+
+    @Override
+    public boolean readBoolean() {
+        return buf.readBoolean();
+    }
+
+    @Override
+    public byte readByte() {
+        return buf.readByte();
+    }
+
+    @Override
+    public short readShort() {
+        return buf.readShort();
+    }
+
+    @Override
+    public char readChar() {
+        return buf.readChar();
+    }
+
+    @Override
+    public int readInt() {
+        return buf.readInt();
+    }
+
+    @Override
+    public long readLong() {
+        return buf.readLong();
+    }
+
+    @Override
+    public float readFloat() {
+        return buf.readFloat();
+    }
+
+    @Override
+    public double readDouble() {
+        return buf.readDouble();
+    }
+
+    @Override
+    public String readString() {
+        int len = readLen();
+        String s = buf.toString(buf.readerIndex(), len, CharsetUtil.UTF_8);
+        buf.skipBytes(len);
+        return s;
+    }
+
+    @Override
+    public String peekString() {
+        int index = buf.readerIndex();
+        try {
+            return readString();
+        } finally {
+            buf.readerIndex(index);
+        }
+    }
+
+    @Override
+    public byte[] readBytes() {
+        byte[] res = new byte[readLen()];
+        buf.readBytes(res);
+        return res;
+    }
+
+    @Override
+    public void read(final byte[] b, final int off, final int len) {
+        buf.readBytes(b, off, len);
+    }
+}
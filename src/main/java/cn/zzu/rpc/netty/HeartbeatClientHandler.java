@@ -26,7 +26,7 @@ public class HeartbeatClientHandler extends ChannelInboundHandlerAdapter {
 
     public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
         Packet packet = (Packet) msg;
-        if (packet.getType() == PacketType.HEARTBEAT_REQ.value() && packet.getBody() == null) {
+        if (packet.isHandshake()) {
             heartbeat = ctx.executor().scheduleAtFixedRate(new HeartBeatTask(ctx), 0, HEARTBEAT_RATE, TimeUnit.SECONDS);
         } else if (packet.getType() == PacketType.HEARTBEAT_RESP.value()) {
             if (logger.isDebugEnabled()) {
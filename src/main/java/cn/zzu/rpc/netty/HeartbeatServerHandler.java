@@ -1,5 +1,7 @@
 package cn.zzu.rpc.netty;
 
+import cn.zzu.rpc.ChannelUtils;
+import cn.zzu.ss.core.SessionDictionary;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -9,10 +11,23 @@ import org.slf4j.LoggerFactory;
 @ChannelHandler.Sharable
 public class HeartbeatServerHandler extends ChannelInboundHandlerAdapter {
     private static final Logger logger = LoggerFactory.getLogger("HeartbeatRespLogger");
+    private SessionDictionary dictionary;
+
+    public HeartbeatServerHandler() {
+    }
+
+    public HeartbeatServerHandler(final SessionDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
 
     @Override
     public void channelActive(final ChannelHandlerContext ctx) {
-        ctx.writeAndFlush(Packet.requireHeartbeat());
+        if (dictionary == null) {
+            ctx.writeAndFlush(Packet.requireHeartbeat());
+        } else {
+            ChannelUtils.installDictionary(ctx.channel(), dictionary);
+            ctx.writeAndFlush(Packet.requireHeartbeat(dictionary.names()));
+        }
     }
 
     public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
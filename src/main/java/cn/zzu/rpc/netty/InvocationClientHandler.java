@@ -7,12 +7,19 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
+/**
+ * 将调用结果交给对应的 {@link InvocationFuture}：同步调用唤醒等待的线程，异步调用的 CompletableFuture 在当前 event loop 线程中完成，
+ * 其回调不应阻塞。调用已经超时或取消时丢弃到达的结果。
+ */
 @ChannelHandler.Sharable
 public class InvocationClientHandler extends ChannelInboundHandlerAdapter {
     public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
         Packet packet = (Packet) msg;
         int invocationID = packet.getInvocationID();
-        InvocationFuture future = InvocationFutureRepo.getInstance().get(invocationID);
+        InvocationFuture future = InvocationFutureRepo.of(ctx.channel()).remove(invocationID);
+        if (future == null) {
+            return;
+        }
         PacketType type = PacketType.valueOf(packet.getType());
         switch (type) {
             case RESULT_INVOCATION:
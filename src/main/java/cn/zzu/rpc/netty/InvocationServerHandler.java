@@ -7,7 +7,17 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * 读到的调用按 {@link Invoker#executorOf(String)} 执行：在当前 event loop 线程中执行的调用，结果只写入出站缓冲区，
+ * 一次读取中的全部结果在 channelReadComplete 时 flush 一次；在线程池中执行的调用由业务线程写回并 flush，
+ * 线程池的队列已满时立即返回失败。返回尚未完成的 {@link CompletionStage} 的服务方法在完成时单独写出并 flush。
+ */
 @ChannelHandler.Sharable
 public class InvocationServerHandler extends ChannelInboundHandlerAdapter {
 
@@ -23,23 +33,63 @@ public class InvocationServerHandler extends ChannelInboundHandlerAdapter {
         if (packet.getType() == PacketType.ASK_INVOCATION.value()) {
             Invocation invocation = (Invocation) packet.getBody();
             Invoker invoker = cachedInvoker.get(invocation.getIdentifier());
-            Packet resp;
             int invocationID = packet.getInvocationID();
             if (invoker == null) {
-                resp = Packet.missService(invocationID, invocation.getIdentifier());
-            } else {
-                try {
-                    resp = Packet.result(invocationID, invoker.invoke(invocation));
-                } catch (NoSuchMethodException e) {
-                    resp = Packet.invokeFailed(invocationID, "no such method -> " + invocation.getMethod());
-                } catch (Exception e) {
-                    resp = Packet.invokeFailed(invocationID, e.getMessage());
+                ctx.write(Packet.missService(invocationID, invocation.getIdentifier()));
+                return;
+            }
+            Executor executor = invoker.executorOf(invocation.getMethod());
+            if (executor == null) {
+                Packet resp = invoke(ctx, invoker, invocation, invocationID);
+                if (resp != null) {
+                    ctx.write(resp);
                 }
+                return;
+            }
+            try {
+                // 在业务线程中执行并写回，不占用 event loop 线程
+                executor.execute(()->{
+                    Packet resp = invoke(ctx, invoker, invocation, invocationID);
+                    if (resp != null) {
+                        ctx.writeAndFlush(resp);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                ctx.write(Packet.invokeFailed(invocationID, "server busy -> " + invocation.getIdentifier() + "."
+                        + invocation.getMethod()));
             }
-            ctx.writeAndFlush(resp);
 
         } else {
             ctx.fireExceptionCaught(new InvalidPacketException("Server received a invalid packet[type invalid]"));
         }
     }
+
+    public void channelReadComplete(final ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+
+    /*
+     * 执行调用并返回结果包；服务方法返回尚未完成的 CompletionStage 时，完成时自行写出，返回 null
+     */
+    private Packet invoke(final ChannelHandlerContext ctx, final Invoker invoker, final Invocation invocation,
+                          final int invocationID) {
+        try {
+            Object result = invoker.invoke(invocation);
+            if (result instanceof CompletableFuture && ((CompletableFuture<?>) result).isDone()) {
+                result = ((CompletableFuture<?>) result).join();
+            } else if (result instanceof CompletionStage) {
+                // 异步的服务方法，完成时再写回结果，不占用当前线程
+                ((CompletionStage<?>) result).whenComplete((v, e)->ctx.writeAndFlush(e == null
+                        ? Packet.result(invocationID, v) : Packet.invokeFailed(invocationID, e.getMessage())));
+                return null;
+            }
+            return Packet.result(invocationID, result);
+        } catch (NoSuchMethodException e) {
+            return Packet.invokeFailed(invocationID, "no such method -> " + invocation.getMethod());
+        } catch (CompletionException e) {
+            return Packet.invokeFailed(invocationID, e.getCause().getMessage());
+        } catch (Exception e) {
+            return Packet.invokeFailed(invocationID, e.getMessage());
+        }
+    }
 }
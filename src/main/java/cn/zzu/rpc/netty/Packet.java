@@ -29,6 +29,15 @@ public final class Packet {
         return new Packet(PacketType.HEARTBEAT_REQ, null);
     }
 
+    /**
+     * 握手包，同时携带连接级共享字典
+     *
+     * @see cn.zzu.ss.core.SessionDictionary#names()
+     */
+    public static Packet requireHeartbeat(final String[][] dictionary) {
+        return new Packet(PacketType.HEARTBEAT_REQ, dictionary);
+    }
+
     public static Packet heartbeatReq() {
         return new Packet(PacketType.HEARTBEAT_REQ, System.currentTimeMillis());
     }
@@ -37,8 +46,8 @@ public final class Packet {
         return new Packet(PacketType.HEARTBEAT_RESP, System.currentTimeMillis());
     }
 
-    public static Packet invocation(final Invocation body) {
-        return new Packet(PacketType.ASK_INVOCATION, body.getInvocationID(), body);
+    public static Packet invocation(final int invocationID, final Invocation body) {
+        return new Packet(PacketType.ASK_INVOCATION, invocationID, body);
     }
 
     public static Packet result(final int invocationID, final Object body) {
@@ -68,6 +77,13 @@ public final class Packet {
         this.type = type.value();
     }
 
+    /**
+     * 是否为服务端在连接建立时发出的握手包，其包体为空或为共享字典
+     */
+    public boolean isHandshake() {
+        return type == PacketType.HEARTBEAT_REQ.value() && (body == null || body instanceof String[][]);
+    }
+
     public Object getBody() {
         return body;
     }
@@ -1,6 +1,8 @@
 package cn.zzu.rpc.netty;
 
+import cn.zzu.rpc.ChannelUtils;
 import cn.zzu.ss.core.Deserializer;
+import cn.zzu.ss.core.SessionDictionary;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
@@ -8,6 +10,11 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import java.util.List;
 
 public final class PacketDecoder extends ByteToMessageDecoder {
+    /*
+     * 每个 event loop 线程复用一个 Deserializer
+     */
+    private static final ThreadLocal<Deserializer> DESERIALIZERS = ThreadLocal.withInitial(Deserializer::new);
+    private static final ThreadLocal<ByteBufSource> SOURCES = ThreadLocal.withInitial(ByteBufSource::new);
 
     @Override
     protected void decode(final ChannelHandlerContext ctx, final ByteBuf buf, final List<Object> out) throws Exception {
@@ -16,11 +23,27 @@ public final class PacketDecoder extends ByteToMessageDecoder {
         PacketType type = PacketType.valueOf(buf.readByte());
         int invocationID = buf.readInt();
         int len = buf.readableBytes();
-        byte[] data = new byte[len];
-        buf.readBytes(data);
-        Deserializer deserializer = new Deserializer(data);
-        Packet packet = new Packet(type, invocationID, deserializer.readObject());
-
-        out.add(packet);
+        // 包体只在 [readerIndex, readerIndex + len) 内解码，结束后整体跳过
+        ByteBuf body = buf.slice(buf.readerIndex(), len);
+        buf.skipBytes(len);
+        Deserializer deserializer = DESERIALIZERS.get();
+        ByteBufSource source = SOURCES.get();
+        try {
+            deserializer.reuse(source.wrap(body));
+            SessionDictionary dictionary = ChannelUtils.dictionary(ctx.channel());
+            if (dictionary != null) {
+                deserializer.share(dictionary);
+            }
+            // 直接从帧缓冲区解码，不拷贝成 byte[]
+            Packet packet = new Packet(type, invocationID, deserializer.readObject());
+            if (packet.isHandshake() && packet.getBody() != null) {
+                // 在解码后续包之前安装服务端下发的字典
+                ChannelUtils.installDictionary(ctx.channel(), SessionDictionary.resolve((String[][]) packet.getBody()));
+            }
+            out.add(packet);
+        } finally {
+            source.release();
+            deserializer.reset();
+        }
     }
 }
@@ -1,23 +1,49 @@
 package cn.zzu.rpc.netty;
 
+import cn.zzu.rpc.ChannelUtils;
 import cn.zzu.ss.core.Serializer;
+import cn.zzu.ss.core.SessionDictionary;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 public final class PacketEncoder extends MessageToByteEncoder<Packet> {
+    /*
+     * 每个 event loop 线程复用一个 Serializer，缓冲区容量在包之间保留
+     */
+    private static final ThreadLocal<Serializer> SERIALIZERS = ThreadLocal.withInitial(Serializer::new);
+    private static final ThreadLocal<ByteBufSink> SINKS = ThreadLocal.withInitial(ByteBufSink::new);
+    /* 包体是否使用紧凑格式，解码方根据流头自动识别 */
+    private final boolean compact;
+
+    public PacketEncoder() {
+        this(false);
+    }
+
+    public PacketEncoder(final boolean compact) {
+        this.compact = compact;
+    }
+
     @Override
     protected void encode(final ChannelHandlerContext ctx, final Packet msg, final ByteBuf out) {
-        ByteBuf buf = Unpooled.buffer();
-        buf.writeShort(msg.getMagic());
-        buf.writeByte(msg.getType());
-        buf.writeInt(msg.getInvocationID());
-        Serializer serializer = new Serializer();
-        serializer.writeObject(msg.getBody());
-        byte[] data = serializer.getSerialData();
-        buf.writeBytes(data);
-
-        out.writeBytes(buf);
+        out.writeShort(msg.getMagic());
+        out.writeByte(msg.getType());
+        out.writeInt(msg.getInvocationID());
+        Serializer serializer = SERIALIZERS.get();
+        ByteBufSink sink = SINKS.get();
+        try {
+            serializer.setCompact(compact);
+            // 握手包本身用于传递字典，不能引用字典
+            SessionDictionary dictionary = ChannelUtils.dictionary(ctx.channel());
+            if (dictionary != null && !msg.isHandshake()) {
+                serializer.share(dictionary);
+            }
+            // 包体直接写入 netty 分配的 out，不经过中间缓冲区
+            serializer.redirect(sink.wrap(out));
+            serializer.writeObject(msg.getBody());
+        } finally {
+            sink.release();
+            serializer.reset();
+        }
     }
 }
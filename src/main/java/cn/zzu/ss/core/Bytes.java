@@ -21,8 +21,10 @@ import java.util.Objects;
  * @see #mark
  * @since 1.8
  */
-public final class Bytes {
+public final class Bytes implements SerialSink, SerialSource {
     private static final int DEFAULT_CAPACITY = 128;
+    /* 超过该长度的字符串不复用 chars，避免长期占用一个大数组 */
+    private static final int MAX_SCRATCH_CHARS = 8192;
 
     /*data 为缓冲区的实际容器*/
     private byte[] data;
@@ -49,6 +51,11 @@ public final class Bytes {
      */
     private int capacity;
 
+    /*
+     * chars 为编解码字符串时复用的临时数组，第一次用到时创建
+     */
+    private char[] chars;
+
     private Bytes(byte[] bytes, int position, int mark, int limit) {
         this.data = bytes;
         this.position = position;
@@ -69,6 +76,17 @@ public final class Bytes {
         return new Bytes(bytes, 0, -1, bytes.length);
     }
 
+    /**
+     * 创建一个池化的堆外缓冲区，使用完毕后需调用 {@link DirectBytes#release()}
+     */
+    public static DirectBytes newDirectBytes() {
+        return new DirectBytes();
+    }
+
+    public static DirectBytes newDirectBytes(int initialCapacity) {
+        return new DirectBytes(initialCapacity);
+    }
+
     /**
      * 返回缓冲区可读的字节数
      */
@@ -176,7 +194,7 @@ public final class Bytes {
         checkBound(position + strLen, position, limit);
         int m = position;
         reset();
-        return new String(data, m, strLen, "UTF-8");
+        return Utf8.decode(data, m, strLen, chars(strLen));
     }
 
     /**
@@ -286,7 +304,7 @@ public final class Bytes {
         int strLen = getLen(true);
         checkBound(position + strLen, position, limit);
         position += strLen;
-        return new String(data, position - strLen, strLen, "UTF-8");
+        return Utf8.decode(data, position - strLen, strLen, chars(strLen));
     }
 
     /**
@@ -357,11 +375,33 @@ public final class Bytes {
      * 写入一个字符串
      */
     public void writeString(String s) throws IOException {
-        byte[] str = s.getBytes("UTF-8");
-        int strLen = str.length;
+        int len = s.length();
+        char[] cs = chars(len);
+        s.getChars(0, len, cs, 0);
+        int strLen = Utf8.length(cs, len);
         writeLen(strLen);
         limit(limit + strLen);
-        System.arraycopy(str, 0, data, limit - strLen, strLen);
+        Utf8.encode(cs, len, data, limit - strLen);
+    }
+
+    /**
+     * 取得至少能容纳 len 个字符的临时数组
+     */
+    private char[] chars(int len) {
+        if (len > MAX_SCRATCH_CHARS) {
+            return new char[len];
+        }
+        if (chars == null || chars.length < len) {
+            chars = new char[Math.max(len, 64)];
+        }
+        return chars;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        Objects.requireNonNull(b);
+        limit(limit + len);
+        System.arraycopy(b, off, data, limit - len, len);
     }
 
     public void writeBytes(byte[] bytes) {
@@ -384,62 +424,38 @@ public final class Bytes {
 
     public void writeShorts(short[] shorts) {
         Objects.requireNonNull(shorts);
-        int arrSize = shorts.length;
-        writeLen(arrSize);
-        limit(limit + arrSize * 2);
-        for (int i = 0; i < arrSize; i++) {
-            Bits.putShort(data, limit - (arrSize - i) * 2, shorts[i]);
-        }
+        writeLen(shorts.length);
+        writeOrdered(shorts, true);
     }
 
     public void writeChars(char[] chars) {
         Objects.requireNonNull(chars);
-        int arrSize = chars.length;
-        writeLen(arrSize);
-        limit(limit + arrSize * 2);
-        for (int i = 0; i < arrSize; i++) {
-            Bits.putChar(data, limit - (arrSize - i) * 2, chars[i]);
-        }
+        writeLen(chars.length);
+        writeOrdered(chars, true);
     }
 
     public void writeInts(int[] integers) {
         Objects.requireNonNull(integers);
-        int arrSize = integers.length;
-        writeLen(arrSize);
-        limit(limit + arrSize * 4);
-        for (int i = 0; i < arrSize; i++) {
-            Bits.putInt(data, limit - (arrSize - i) * 4, integers[i]);
-        }
+        writeLen(integers.length);
+        writeOrdered(integers, true);
     }
 
     public void writeFloats(float[] floats) {
         Objects.requireNonNull(floats);
-        int arrSize = floats.length;
-        writeLen(arrSize);
-        limit(limit + arrSize * 4);
-        for (int i = 0; i < arrSize; i++) {
-            Bits.putFloat(data, limit - (arrSize - i) * 4, floats[i]);
-        }
+        writeLen(floats.length);
+        writeOrdered(floats, true);
     }
 
     public void writeLongs(long[] longs) {
         Objects.requireNonNull(longs);
-        int arrSize = longs.length;
-        writeLen(arrSize);
-        limit(limit + arrSize * 8);
-        for (int i = 0; i < arrSize; i++) {
-            Bits.putLong(data, limit - (arrSize - i) * 8, longs[i]);
-        }
+        writeLen(longs.length);
+        writeOrdered(longs, true);
     }
 
     public void writeDoubles(double[] doubles) {
         Objects.requireNonNull(doubles);
-        int arrSize = doubles.length;
-        writeLen(arrSize);
-        limit(limit + arrSize * 8);
-        for (int i = 0; i < arrSize; i++) {
-            Bits.putDouble(data, limit - (arrSize - i) * 8, doubles[i]);
-        }
+        writeLen(doubles.length);
+        writeOrdered(doubles, true);
     }
 
     public byte[] readBytes() {
@@ -465,71 +481,127 @@ public final class Bytes {
     }
 
     public short[] readShorts() {
-        int arrSize = getLen(true);
-        checkBound(position + arrSize * 2, position, limit);
-        short[] res = (short[]) Array.newInstance(short.class, arrSize);
-        for (int i = 0; i < arrSize; ++i) {
-            res[i] = Bits.getShort(data, position);
-            position += 2;
-        }
+        short[] res = new short[getLen(true)];
+        readArray(res, !PrimitiveArrays.BIG_ENDIAN_HOST);
         return res;
     }
 
     public char[] readChars() {
-        int arrSize = getLen(true);
-        checkBound(position + arrSize * 2, position, limit);
-        char[] res = (char[]) Array.newInstance(char.class, arrSize);
-        for (int i = 0; i < arrSize; ++i) {
-            res[i] = Bits.getChar(data, position);
-            position += 2;
-        }
+        char[] res = new char[getLen(true)];
+        readArray(res, !PrimitiveArrays.BIG_ENDIAN_HOST);
         return res;
     }
 
     public int[] readInts() {
-        int arrSize = getLen(true);
-        checkBound(position + arrSize * 4, position, limit);
-        int[] res = (int[]) Array.newInstance(int.class, arrSize);
-        for (int i = 0; i < arrSize; ++i) {
-            res[i] = Bits.getInt(data, position);
-            position += 4;
-        }
+        int[] res = new int[getLen(true)];
+        readArray(res, !PrimitiveArrays.BIG_ENDIAN_HOST);
         return res;
     }
 
     public float[] readFloats() {
-        int arrSize = getLen(true);
-        checkBound(position + arrSize * 4, position, limit);
-        float[] res = (float[]) Array.newInstance(float.class, arrSize);
-        for (int i = 0; i < arrSize; ++i) {
-            res[i] = Bits.getFloat(data, position);
-            position += 4;
-        }
+        float[] res = new float[getLen(true)];
+        readArray(res, !PrimitiveArrays.BIG_ENDIAN_HOST);
         return res;
     }
 
     public long[] readLongs() {
-        int arrSize = getLen(true);
-        checkBound(position + arrSize * 8, position, limit);
-        long[] res = (long[]) Array.newInstance(long.class, arrSize);
-        for (int i = 0; i < arrSize; ++i) {
-            res[i] = Bits.getLong(data, position);
-            position += 8;
-        }
+        long[] res = new long[getLen(true)];
+        readArray(res, !PrimitiveArrays.BIG_ENDIAN_HOST);
         return res;
     }
 
     public double[] readDoubles() {
-        int arrSize = getLen(true);
-        checkBound(position + arrSize * 8, position, limit);
-        double[] res = (double[]) Array.newInstance(double.class, arrSize);
-        for (int i = 0; i < arrSize; ++i) {
-            res[i] = Bits.getDouble(data, position);
-            position += 8;
-        }
+        double[] res = new double[getLen(true)];
+        readArray(res, !PrimitiveArrays.BIG_ENDIAN_HOST);
         return res;
     }
 
+    @Override
+    public void read(byte[] b, int off, int len) {
+        checkReadable(len);
+        System.arraycopy(data, position, b, off, len);
+        position += len;
+    }
+
+    @Override
+    public boolean seekable() {
+        return true;
+    }
+
+    @Override
+    public long offset() {
+        return position;
+    }
+
+    @Override
+    public void seek(long offset) {
+        if (offset < 0 || offset > limit) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", offset, 0, limit));
+        }
+        position = (int) offset;
+    }
+
+    /**
+     * 共用同一个数组的只读视图，见 {@link SerialSource#slice(int)}
+     */
+    @Override
+    public Bytes slice(int length) {
+        checkReadable(length);
+        Bytes view = new Bytes(data, position, -1, position + length);
+        position += length;
+        return view;
+    }
+
+    @Override
+    public void writeArray(Object array) {
+        writeOrdered(array, false);
+    }
+
+    @Override
+    public int writerIndex() {
+        return limit;
+    }
+
+    @Override
+    public void setInt(int index, int v) {
+        if (index < 0 || index + 4 > limit) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", index + 4, 0, limit));
+        }
+        Bits.putInt(data, index, v);
+    }
+
+    @Override
+    public void readArray(Object array, boolean swap) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        if (bytes > Integer.MAX_VALUE) throw new InvalidIndexException(String.format("Invalid len %d", bytes));
+        checkReadable((int) bytes);
+        PrimitiveArrays.copy(data, PrimitiveArrays.BYTE_BASE + position, array, PrimitiveArrays
+                .base(array), bytes, PrimitiveArrays.scale(array), swap);
+        position += (int) bytes;
+    }
+
+    /**
+     * 整块写入基本类型数组的全部元素
+     *
+     * @param bigEndian true 按大端序写入，false 按本机字节序写入
+     */
+    private void writeOrdered(Object array, boolean bigEndian) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        if (bytes > Integer.MAX_VALUE - limit) {
+            throw new InvalidIndexException(String.format("Invalid limit %d", limit + bytes));
+        }
+        int off = limit;
+        limit(limit + (int) bytes);
+        PrimitiveArrays.copy(array, PrimitiveArrays.base(array), data, PrimitiveArrays.BYTE_BASE + off, bytes, PrimitiveArrays
+                .scale(array), bigEndian && !PrimitiveArrays.BIG_ENDIAN_HOST);
+    }
+
+    private void checkReadable(int n) {
+        if (n < 0 || position + n > limit) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", position + n, position, limit));
+        }
+    }
+
     private void checkBound(int index, int minIndex, int maxIndex) {
         if (index < minIndex && index >= maxIndex)
             throw new InvalidIndexException(String.format("%d out of bound %d - %d", index, minIndex, maxIndex));
@@ -586,31 +658,16 @@ public final class Bytes {
         return bytes;
     }
 
-    private void writeLen(int len) {
+    @Override
+    public void writeLen(int len) {
         if (len < 0) throw new NegativeArraySizeException();
-        byte[] bytes;
-        if (len <= 0x7F) {
-            bytes = new byte[1];
-            bytes[0] = (byte) (len & 0x7F);
-        } else if (len <= 0x3FFF) {
-            bytes = new byte[2];
-            bytes[0] = (byte) ((len >>> 7) | 0x80);
-            bytes[1] = (byte) (len & 0x7F);
-        } else if (len <= 0x1FFFFF) {
-            bytes = new byte[3];
-            bytes[0] = (byte) ((len >>> 14) | 0x80);
-            bytes[1] = (byte) ((len >>> 7) | 0x80);
-            bytes[2] = (byte) (len & 0x7F);
-        } else {
-            bytes = new byte[4];
-            bytes[0] = (byte) ((len >>> 21) | 0x80);
-            bytes[1] = (byte) ((len >>> 14) | 0x80);
-            bytes[2] = (byte) ((len >>> 7) | 0x80);
-            bytes[3] = (byte) (len & 0x7F);
-        }
-        for (byte b : bytes) {
-            writeByte(b);
+        int n = len <= 0x7F ? 1 : len <= 0x3FFF ? 2 : len <= 0x1FFFFF ? 3 : 4;
+        limit(limit + n);
+        int p = limit - n;
+        for (int shift = 7 * (n - 1); shift > 0; shift -= 7) {
+            data[p++] = (byte) ((len >>> shift) | 0x80);
         }
+        data[p] = (byte) (len & 0x7F);
     }
 
     private int getLen(final boolean read) {
@@ -657,6 +714,32 @@ public final class Bytes {
         return Arrays.toString(data);
     }
 
+    /**
+     * 丢弃缓冲区中的所有数据，但保留已增长的容量，供下一次写入复用
+     */
+    public Bytes discard() {
+        position = 0;
+        limit = 0;
+        mark = -1;
+        return this;
+    }
+
+    /**
+     * 以 data[off, off + len) 作为可读区域重新装载缓冲区，不拷贝数据
+     */
+    public Bytes reuse(byte[] data, int off, int len) {
+        Objects.requireNonNull(data);
+        if (off < 0 || len < 0 || off + len > data.length) {
+            throw new InvalidIndexException(String.format("Invalid off %d or len %d", off, len));
+        }
+        this.data = data;
+        this.capacity = data.length;
+        this.position = off;
+        this.limit = off + len;
+        this.mark = -1;
+        return this;
+    }
+
     public void clear() {
         capacity = DEFAULT_CAPACITY;
         position = 0;
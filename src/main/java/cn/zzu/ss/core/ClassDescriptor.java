@@ -17,7 +17,15 @@ import static cn.zzu.ss.util.MemberUtil.getSerializableConstructor;
  * @since 1.8
  */
 final class ClassDescriptor {
-    private static final LightCache<Class<?>, ClassDescriptor> CACHES = new LightCache<>();
+    /*
+     * 按类缓存描述符。ClassValue 的查找不会分配对象，描述符随类一起被回收
+     */
+    private static final ClassValue<ClassDescriptor> CACHES = new ClassValue<ClassDescriptor>() {
+        @Override
+        protected ClassDescriptor computeValue(Class<?> cl) {
+            return TypeUtil.isRefPrimitive(cl) ? new ClassDescriptor(cl, true) : new ClassDescriptor(cl);
+        }
+    };
     private static final FieldDescriptor[] NO_FIELDS = new FieldDescriptor[0];
     private static final Long DEFAULT_UID = 1L;
     private static final Long INACCESSIBLE_UID = 0L;
@@ -57,7 +65,6 @@ final class ClassDescriptor {
         if (cons == null) throw new NullPointerException(String
                 .format("couldn't find default constructor for class %s.", type.getCanonicalName()));
         this.refPrimitive = false;
-        CACHES.put(type, this);
     }
 
     private ClassDescriptor(final Class<?> type, boolean ref) {
@@ -71,8 +78,6 @@ final class ClassDescriptor {
         fieldReflector = null;
         cons = null;
         this.refPrimitive = ref;
-        CACHES.put(type, this);
-
     }
 
     private static FieldDescriptor[] getSerialFields(Class<?> cl) {
@@ -155,14 +160,7 @@ final class ClassDescriptor {
     }
 
     static ClassDescriptor resolve(Class<?> cl) {
-
-
-        ClassDescriptor res = CACHES.getIfPresent(cl);
-        if (res == null) {
-            if (TypeUtil.isRefPrimitive(cl)) res = new ClassDescriptor(cl, true);
-            else res = new ClassDescriptor(cl);
-        }
-        return res;
+        return CACHES.get(cl);
     }
 
     private long getSerialVersionUID(Class<?> type) {
@@ -231,9 +229,9 @@ final class ClassDescriptor {
     static class FieldReflector {
         private static final Unsafe unsafe = UnsafeUtil.getUnsafe();
         private FieldDescriptor[] fieldDescriptors;
-        private Integer[] priKeys;
-        private Integer[] priSize;
-        private Integer[] refKeys;
+        private int[] priKeys;
+        private int[] priSize;
+        private int[] refKeys;
         private long[] offsets;
         private int priLen = 0;
 
@@ -261,9 +259,9 @@ final class ClassDescriptor {
                 offsets[i] = descriptor.getOffset();
             }
 
-            priKeys = priFieldKey.toArray(new Integer[0]);
-            priSize = priFieldSize.toArray(new Integer[0]);
-            refKeys = refFieldKey.toArray(new Integer[0]);
+            priKeys = priFieldKey.stream().mapToInt(Integer::intValue).toArray();
+            priSize = priFieldSize.stream().mapToInt(Integer::intValue).toArray();
+            refKeys = refFieldKey.stream().mapToInt(Integer::intValue).toArray();
 
             if (priKeys.length + refKeys.length != fieldDescriptors.length) {
                 throw new InternalError();
@@ -303,7 +301,7 @@ final class ClassDescriptor {
 
             int pos = 0;
 
-            for (Integer k : priKeys) {
+            for (int k : priKeys) {
                 FieldDescriptor descriptor = fieldDescriptors[k];
                 switch (descriptor.getTypeCode()) {
                     case 'z':
@@ -348,7 +346,7 @@ final class ClassDescriptor {
             if (priLen != priVals.length) throw new InvalidIndexException("invalid byte array range");
             int pos = 0;
 
-            for (Integer k : priKeys) {
+            for (int k : priKeys) {
                 FieldDescriptor descriptor = fieldDescriptors[k];
                 switch (descriptor.getTypeCode()) {
                     case 'z':
@@ -387,11 +385,163 @@ final class ClassDescriptor {
             }
         }
 
+        /**
+         * 写出全部基本类型字段，格式为长度前缀 + 各字段的值，与 out.writeBytes(primValOfObj(o)) 相同。
+         * 各字段直接写入 out，不经过中间 byte[]
+         */
+        void writePrimitives(Object o, SerialSink out) {
+            out.writeLen(priLen);
+            for (int k : priKeys) {
+                long offset = offsets[k];
+                switch (fieldDescriptors[k].getTypeCode()) {
+                    case 'z':
+                        out.writeBoolean(unsafe.getBoolean(o, offset));
+                        break;
+                    case 'b':
+                        out.writeByte(unsafe.getByte(o, offset));
+                        break;
+                    case 'c':
+                        out.writeChar(unsafe.getChar(o, offset));
+                        break;
+                    case 's':
+                        out.writeShort(unsafe.getShort(o, offset));
+                        break;
+                    case 'i':
+                        out.writeInt(unsafe.getInt(o, offset));
+                        break;
+                    case 'f':
+                        out.writeFloat(unsafe.getFloat(o, offset));
+                        break;
+                    case 'j':
+                        out.writeLong(unsafe.getLong(o, offset));
+                        break;
+                    case 'd':
+                        out.writeDouble(unsafe.getDouble(o, offset));
+                        break;
+                    default:
+                        throw new InternalError();
+                }
+            }
+        }
+
+        /**
+         * 读取 {@link #writePrimitives(Object, SerialSink)} 写出的基本类型字段，各字段直接从 in 读出，不经过中间 byte[]
+         */
+        void readPrimitives(Object o, SerialSource in) {
+            if (in.readLen() != priLen) throw new InvalidIndexException("invalid byte array range");
+            for (int k : priKeys) {
+                long offset = offsets[k];
+                switch (fieldDescriptors[k].getTypeCode()) {
+                    case 'z':
+                        unsafe.putBoolean(o, offset, in.readBoolean());
+                        break;
+                    case 'b':
+                        unsafe.putByte(o, offset, in.readByte());
+                        break;
+                    case 'c':
+                        unsafe.putChar(o, offset, in.readChar());
+                        break;
+                    case 's':
+                        unsafe.putShort(o, offset, in.readShort());
+                        break;
+                    case 'i':
+                        unsafe.putInt(o, offset, in.readInt());
+                        break;
+                    case 'f':
+                        unsafe.putFloat(o, offset, in.readFloat());
+                        break;
+                    case 'j':
+                        unsafe.putLong(o, offset, in.readLong());
+                        break;
+                    case 'd':
+                        unsafe.putDouble(o, offset, in.readDouble());
+                        break;
+                    default:
+                        throw new InternalError();
+                }
+            }
+        }
+
+        /**
+         * 以紧凑格式写出全部基本类型字段：short、char、int、long 为 zigzag 变长整数，其余类型与
+         * {@link #writePrimitives(Object, SerialSink)} 相同。字段的类型与顺序由类决定，因此不写长度前缀
+         */
+        void writeCompactPrimitives(Object o, SerialSink out) {
+            for (int k : priKeys) {
+                long offset = offsets[k];
+                switch (fieldDescriptors[k].getTypeCode()) {
+                    case 'z':
+                        out.writeBoolean(unsafe.getBoolean(o, offset));
+                        break;
+                    case 'b':
+                        out.writeByte(unsafe.getByte(o, offset));
+                        break;
+                    case 'c':
+                        out.writeVarInt(unsafe.getChar(o, offset));
+                        break;
+                    case 's':
+                        out.writeVarInt(unsafe.getShort(o, offset));
+                        break;
+                    case 'i':
+                        out.writeVarInt(unsafe.getInt(o, offset));
+                        break;
+                    case 'f':
+                        out.writeFloat(unsafe.getFloat(o, offset));
+                        break;
+                    case 'j':
+                        out.writeVarLong(unsafe.getLong(o, offset));
+                        break;
+                    case 'd':
+                        out.writeDouble(unsafe.getDouble(o, offset));
+                        break;
+                    default:
+                        throw new InternalError();
+                }
+            }
+        }
+
+        /**
+         * 读取 {@link #writeCompactPrimitives(Object, SerialSink)} 写出的基本类型字段
+         */
+        void readCompactPrimitives(Object o, SerialSource in) {
+            for (int k : priKeys) {
+                long offset = offsets[k];
+                switch (fieldDescriptors[k].getTypeCode()) {
+                    case 'z':
+                        unsafe.putBoolean(o, offset, in.readBoolean());
+                        break;
+                    case 'b':
+                        unsafe.putByte(o, offset, in.readByte());
+                        break;
+                    case 'c':
+                        unsafe.putChar(o, offset, (char) in.readVarInt());
+                        break;
+                    case 's':
+                        unsafe.putShort(o, offset, (short) in.readVarInt());
+                        break;
+                    case 'i':
+                        unsafe.putInt(o, offset, in.readVarInt());
+                        break;
+                    case 'f':
+                        unsafe.putFloat(o, offset, in.readFloat());
+                        break;
+                    case 'j':
+                        unsafe.putLong(o, offset, in.readVarLong());
+                        break;
+                    case 'd':
+                        unsafe.putDouble(o, offset, in.readDouble());
+                        break;
+                    default:
+                        throw new InternalError();
+                }
+            }
+        }
+
         int getPriLen() {
             return priLen;
         }
 
-        Integer[] getRefKeys() {
+        int[] getRefKeys() {
             return refKeys;
         }
 
@@ -399,11 +549,11 @@ final class ClassDescriptor {
             return fieldDescriptors;
         }
 
-        Integer[] getPriKeys() {
+        int[] getPriKeys() {
             return priKeys;
         }
 
-        Integer[] getPriSize() {
+        int[] getPriSize() {
             return priSize;
         }
 
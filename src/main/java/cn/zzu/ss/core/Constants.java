@@ -1,5 +1,9 @@
 package cn.zzu.ss.core;
 
+/*
+ * 全部标志字节都在 [FC_NULL, 0x7F] 之内。类名的 id 由 Serializer 写成首字节不在该范围内的形式，
+ * 新增的标志不能超出该范围
+ */
 class Constants {
     /*--------------------Flag Control--------------------*/
     /**
@@ -61,4 +65,62 @@ class Constants {
     final static byte FS_ARRAY = 0x5F;
     final static byte FS_STRING = 0x60;
     final static byte FS_CLASS = 0x61;
+    /**
+     * string from the session dictionary, followed by its id.
+     */
+    final static byte FS_SHARED_STRING = 0x62;
+
+    /*--------------------Stream Header--------------------*/
+    /**
+     * set this at the beginning of a stream that refers to a session dictionary, followed by its fingerprint.
+     */
+    final static byte FC_SESSION = 0x63;
+    /**
+     * set this at the beginning of a stream written in the compact profile.
+     */
+    final static byte FC_COMPACT = 0x66;
+
+    /*--------------------Byte Order--------------------*/
+    /**
+     * primitive array elements are big-endian.
+     */
+    final static byte FC_BIG_ENDIAN = 0x64;
+    /**
+     * primitive array elements are little-endian.
+     */
+    final static byte FC_LITTLE_ENDIAN = 0x65;
+
+    /*--------------------Compact Profile--------------------*/
+    /**
+     * single-byte tags of reference primitives in the compact profile, the value of boolean is in the tag itself.
+     */
+    final static byte FS_TRUE = 0x67;
+    final static byte FS_FALSE = 0x68;
+    final static byte FS_BYTE = 0x69;
+    final static byte FS_SHORT = 0x6A;
+    final static byte FS_CHAR = 0x6B;
+    final static byte FS_INT = 0x6C;
+    final static byte FS_LONG = 0x6D;
+    final static byte FS_FLOAT = 0x6E;
+    final static byte FS_DOUBLE = 0x6F;
+
+    /*--------------------Skippable Field--------------------*/
+    /**
+     * set this before a field value that may be skipped, followed by the byte length of the value;
+     * the value is followed by the number of handles and class names it registers.
+     */
+    final static byte FC_SKIPPABLE = 0x70;
+
+    /*--------------------Indexed Object--------------------*/
+    /**
+     * set this at the beginning of a stream whose objects carry an offset table of their reference fields.
+     */
+    final static byte FC_INDEXED = 0x71;
+
+    /*--------------------Segmented Container--------------------*/
+    /**
+     * set this before a collection or an array whose elements are split into independently encoded segments,
+     * followed by the segment directory.
+     */
+    final static byte FS_SEGMENTED = 0x72;
 }
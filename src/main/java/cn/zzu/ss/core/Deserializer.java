@@ -5,13 +5,22 @@ import cn.zzu.ss.util.ReflectionException;
 import cn.zzu.ss.util.TypeUtil;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 import static cn.zzu.ss.core.Constants.*;
 
@@ -20,24 +29,141 @@ import static cn.zzu.ss.core.Constants.*;
  */
 public class Deserializer {
 
-    private List<Object> handled;
+    private static final int DEFAULT_HANDLES = 64;
+    private static final int DEFAULT_CLASSES = 16;
+    private static final byte[] EMPTY_DATA = new byte[0];
+    /* 读取来源不能提供视图时，并行解码前一批读入堆上的分段数据的上限 */
+    private static final int MAX_STAGED_BYTES = 16 << 20;
+
+    /* 已读出的对象，下标即句柄 */
+    private Object[] handled;
+    private int handledSize;
+    /* 已读出的类，下标加一即类 id */
+    private Class<?>[] classes;
+    private int classesSize;
+    /* 会话级共享字典，对象流以 FC_SESSION 开头时才生效 */
+    private SessionDictionary session;
+    private boolean sessionActive;
+    /* 对象流以 FC_COMPACT 开头时为 true */
+    private boolean compact;
+    /* 对象流带有 FC_INDEXED 时为 true，各层基本类型字段之后有偏移表 */
+    private boolean indexed;
     private int depth = 0;
+    /* 下一个读出的普通对象需要的字段，为 null 时读出全部字段 */
+    private Projection projection;
+    /* 并行解码分段容器的线程池，为 null 时顺序解码，在 reset() 之后依然有效 */
+    private ForkJoinPool pool;
+    /* 投影时跳过的字段值，其中的句柄与类被引用时再回头解码 */
+    private final List<Skipped> skipped = new ArrayList<>();
     private Bytes bytes;
+    /* 实际的读取来源，默认为 bytes */
+    private SerialSource in;
+
+    public Deserializer() {
+        this(EMPTY_DATA);
+    }
 
     public Deserializer(byte[] data) {
         bytes = Bytes.newBytes(data);
-        handled = new ArrayList<>();
+        in = bytes;
+        handled = new Object[DEFAULT_HANDLES];
+        classes = new Class<?>[DEFAULT_CLASSES];
+    }
+
+    public Deserializer(byte[] data, int off, int len) {
+        this();
+        bytes.reuse(data, off, len);
+    }
+
+    public Deserializer(SerialSource source) {
+        this();
+        in = Objects.requireNonNull(source);
+    }
+
+    /**
+     * 流式读取：经由大小固定的窗口从 is 读取对象流，边读边解码，不需要先把整个对象流读进一个 byte[]，
+     * 占用的内存只与窗口大小和读出的对象图有关。{@link #readObject()} 在输入结束时返回 null，
+     * 读取失败或数据不完整时抛出 {@link DeserializeException}。窗口可能预读超过当前对象流末尾的数据。
+     *
+     * @param is         输入流
+     * @param bufferSize 窗口大小，至少 64 字节
+     */
+    public Deserializer(InputStream is, int bufferSize) {
+        this(new StreamSource(is, bufferSize));
+    }
+
+    public Deserializer(InputStream is) {
+        this(is, StreamSource.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 同 {@link #Deserializer(InputStream, int)}，从 channel 读取
+     *
+     * @param channel    输入通道，须为阻塞模式
+     * @param bufferSize 窗口大小，至少 64 字节
+     */
+    public Deserializer(ReadableByteChannel channel, int bufferSize) {
+        this(new StreamSource(channel, bufferSize));
+    }
+
+    public Deserializer(ReadableByteChannel channel) {
+        this(channel, StreamSource.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 以 data[off, off + len) 作为新的对象流，复用当前实例。数据不会被拷贝。
+     */
+    public Deserializer reuse(byte[] data, int off, int len) {
+        reset();
+        bytes.reuse(data, off, len);
+        return this;
+    }
+
+    /**
+     * 以 source 作为新的对象流，复用当前实例。
+     */
+    public Deserializer reuse(SerialSource source) {
+        reset();
+        in = Objects.requireNonNull(source);
+        return this;
+    }
+
+    /**
+     * 释放对上一个对象流及其已读对象的引用
+     */
+    public void reset() {
+        Arrays.fill(handled, 0, handledSize, null);
+        handledSize = 0;
+        Arrays.fill(classes, 0, classesSize, null);
+        classesSize = 0;
+        session = null;
+        sessionActive = false;
+        compact = false;
+        indexed = false;
+        depth = 0;
+        projection = null;
+        skipped.clear();
+        bytes.reuse(EMPTY_DATA, 0, 0);
+        in = bytes;
     }
 
     public Object readObject() {
-        if (bytes.readable() <= 0) return null;
+        if (in.readable() <= 0) return null;
         Object res;
-        byte f = bytes.peekByte();
+        if (depth == 0) {
+            read_header();
+        }
+        byte f = peek_flag();
+        if (f != FC_CLASS) {
+            // 投影只作用于普通对象
+            projection = null;
+        }
         try {
             switch (f) {
                 case Constants.FS_REF_PRIMITIVE:
                     res = read_ref_primitive(true, true);
                     break;
+                case Constants.FS_SHARED_STRING:
                 case Constants.FS_STRING:
                     res = read_string();
                     break;
@@ -53,15 +179,18 @@ public class Deserializer {
                 case Constants.FS_ARRAY:
                     res = read_array(true);
                     break;
+                case FS_SEGMENTED:
+                    res = read_segmented();
+                    break;
                 case Constants.FC_NULL:
-                    bytes.skipBytes(1);
+                    in.skipBytes(1);
                     res = null;
                     break;
                 case Constants.FC_REFERENCE:
                     res = read_handled();
                     break;
                 case Constants.FS_CLASS:
-                    res = read_classname(true, true);
+                    res = read_class(true, true);
                     break;
                 default:
                     res = read_object(true, true, true, null);
@@ -76,27 +205,136 @@ public class Deserializer {
         return res;
     }
 
+    /**
+     * 投影读取：读出下一个对象，但只为 fieldPaths 列出的引用字段赋值，其余引用字段保持默认值，基本类型字段总是读出。
+     * 路径以 '.' 分隔，例如 "address.city" 只读出 address 字段中对象的 city 字段，"address" 读出整个 address；
+     * 不给出路径时读出全部字段。
+     * <p>
+     * 对象流由 {@link Serializer#setSkippable(boolean) 可跳过的} 写出方写出时，不需要的对象、集合、map 与数组字段按长度整体跳过，
+     * 不会被解码；之后的引用指向被跳过的值时，再回到该值的位置解码。读取来源不能回退（流式读取）时不跳过，
+     * 与其它对象流一样照常解码后丢弃不需要的字段。
+     *
+     * @param type       对象的类型
+     * @param fieldPaths 需要的字段路径
+     *
+     * @return 读出的对象，对象流已结束时返回 null
+     */
+    public <T> T readObject(Class<T> type, String... fieldPaths) {
+        projection = fieldPaths.length == 0 ? null : project(fieldPaths);
+        Object res;
+        try {
+            res = readObject();
+        } finally {
+            projection = null;
+        }
+        if (res != null && !type.isInstance(res)) {
+            throw new DeserializeException(String.format("expected %s but read %s", type.getName(), res.getClass().getName()));
+        }
+        return type.cast(res);
+    }
+
+    /**
+     * 在 pool 中并行解码 {@link Serializer#setParallel(ForkJoinPool, int) 分段写出的} 集合与数组，
+     * 各分段的元素按顺序放回集合或数组。读取来源能提供 {@link SerialSource#slice(int) 视图} 时各分段直接在视图上解码，
+     * 否则分段的数据先依次读入各自的数组，每批至多 16MB，解码完一批再读下一批。
+     *
+     * @param pool 解码分段的线程池，为 null 时顺序解码
+     */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 以 dictionary 解析之后读到的、以 FC_SESSION 开头的对象流，直到调用 {@link #reset()}
+     *
+     * @param dictionary 会话级共享字典，须与写出方一致
+     */
+    public void share(SessionDictionary dictionary) {
+        session = Objects.requireNonNull(dictionary);
+    }
 
     /*------------------- private methods -----------------*/
+    /*
+     * [fc_compact] + [fc_indexed] + [fc_session + fingerprint]
+     */
+    private void read_header() {
+        if (in.peekByte() == FC_COMPACT) {
+            in.skipBytes(1);
+            compact = true;
+        }
+        if (in.peekByte() == FC_INDEXED) {
+            in.skipBytes(1);
+            indexed = true;
+        }
+        if (in.peekByte() == FC_SESSION) {
+            read_session();
+        }
+    }
+
+    private void read_session() {
+        in.skipBytes(1);
+        int fingerprint = in.readInt();
+        if (session == null || session.fingerprint() != fingerprint) {
+            throw new DeserializeException("stream refers to an unknown session dictionary");
+        }
+        sessionActive = true;
+    }
+
+    private SessionDictionary shared() {
+        if (!sessionActive) {
+            throw new DeserializeException("stream doesn't refer to a session dictionary");
+        }
+        return session;
+    }
+
+    /*
+     * 预读下一个标志，紧凑格式中装箱类型的单字节标签统一视为 FS_REF_PRIMITIVE
+     */
+    private byte peek_flag() {
+        byte f = in.peekByte();
+        return compact && f >= FS_TRUE && f <= FS_DOUBLE ? FS_REF_PRIMITIVE : f;
+    }
+
+    /*
+     * 句柄下标与数组、集合、map 的长度
+     */
+    private int read_length() {
+        return compact ? in.readVarInt() : in.readInt();
+    }
+
+    /*
+     * primitive_variables + [offset_table]，偏移表只供 ObjectView 使用，顺序读取时直接跳过
+     */
+    private void read_primitives(ClassDescriptor.FieldReflector fieldReflector, Object o) {
+        if (compact) {
+            fieldReflector.readCompactPrimitives(o, in);
+        } else {
+            fieldReflector.readPrimitives(o, in);
+        }
+        if (indexed) {
+            in.skipBytes((fieldReflector.getRefKeys().length + 1) << 2);
+        }
+    }
+
     private String read_string() throws IOException {
-        bytes.skipBytes(1);
-        String str = bytes.readString();
-        handled.add(str);
+        byte f = in.readByte();
+        String str = f == FS_SHARED_STRING ? shared().stringAt(in.readLen()) : in.readString();
+        handle(str);
         return str;
     }
 
     private void check_reset() {
-        if (bytes.peekByte() != Constants.FC_RESET) {
+        if (in.peekByte() != Constants.FC_RESET) {
             throw new DeserializeException("invalid data");
         }
-        bytes.skipBytes(1);
+        in.skipBytes(1);
     }
 
     private Enum<?> read_enum(final boolean sign, final boolean clSign) throws IOException, ClassNotFoundException {
         Enum<?> res = null;
         check_flag(Constants.FS_ENUM, true);
         Class<?> enumType = read_classname(false, false);
-        String name = bytes.readString();
+        String name = in.readString();
         try {
             Method values = MemberUtil.getMethod("values", enumType, true);
             Enum<?>[] all = (Enum<?>[]) values.invoke(name);
@@ -113,72 +351,253 @@ public class Deserializer {
 
     @SuppressWarnings("unchecked")
     private Collection read_collection() throws IOException, ClassNotFoundException {
+        if (in.peekByte() == FS_SEGMENTED) {
+            return (Collection) read_segmented();
+        }
         check_flag(Constants.FS_COLLECTION, true);
         Class colType = read_classname(false, false);
-        int len = bytes.readInt();
+        int len = read_length();
         Collection collection = null;
         try {
             collection = (Collection) colType.newInstance();
-            handled.add(collection);
-            Class<?> lastEleType = null;
-            for (int i = 0; i < len; i++) {
-                byte f = bytes.peekByte();
-                Object o;
-                switch (f) {
-                    case Constants.FC_NULL:
-                        o = null;
-                        break;
-                    case Constants.FC_REFERENCE:
-                        o = read_handled();
-                        break;
-                    case Constants.FC_LAST_ELE_TYPE:
-                        o = read_object(false, true, false, lastEleType);
-                        break;
-                    case Constants.FS_REF_PRIMITIVE:
-                        o = read_ref_primitive(true, true);
-                        break;
-                    case Constants.FS_CLASS:
-                        o = read_class(true, true);
-                        break;
-                    case Constants.FS_STRING:
-                        o = read_string();
-                        break;
-                    default:
-                        lastEleType = Class.forName(bytes.peekString().replace('/', '.'));
-                        o = read_object(true, false, false, null);
-                }
-
-                collection.add(o);
-            }
+            handle(collection);
+            read_elements(len, collection::add);
         } catch (InstantiationException | IllegalAccessException ignored) {
         }
 
         return collection;
     }
 
-    private Object read_handled() {
-        bytes.readByte();
-        int idx = bytes.readInt();
-        Object o;
-        try {
-            o = handled.get(idx);
-        } catch (Exception e) {
+    /*
+     * 分段中的 len 个元素，读入 dst[off, off + len)
+     */
+    private void read_elements(int len, Object[] dst, int off) throws IOException, ClassNotFoundException {
+        int[] next = {off};
+        read_elements(len, o -> dst[next[0]++] = o);
+    }
+
+    /*
+     * 集合的 len 个元素，按顺序交给 to
+     */
+    private void read_elements(int len, Consumer<Object> to) throws IOException, ClassNotFoundException {
+        Class<?> lastEleType = null;
+        for (int i = 0; i < len; i++) {
+            byte f = peek_flag();
+            Object o;
+            switch (f) {
+                case Constants.FC_NULL:
+                    in.skipBytes(1);
+                    o = null;
+                    break;
+                case Constants.FC_REFERENCE:
+                    o = read_handled();
+                    break;
+                case Constants.FC_LAST_ELE_TYPE:
+                    in.skipBytes(1);
+                    o = read_object(false, true, false, lastEleType);
+                    break;
+                case Constants.FS_REF_PRIMITIVE:
+                    o = read_ref_primitive(true, true);
+                    lastEleType = o.getClass();
+                    break;
+                case Constants.FS_CLASS:
+                    o = read_class(true, true);
+                    lastEleType = Class.class;
+                    break;
+                case Constants.FS_SHARED_STRING:
+                case Constants.FS_STRING:
+                    o = read_string();
+                    lastEleType = String.class;
+                    break;
+                default:
+                    lastEleType = read_classname(false, false);
+                    o = read_object(false, false, false, lastEleType);
+            }
+
+            to.accept(o);
+        }
+    }
+
+    /*
+     * fs_segmented + [fs_collection | fs_array] + class_name + size + segment_count + loop[element_count + byte_length]
+     * + loop[segment]
+     * 各分段使用独立的句柄表与类表解码，其中的对象不登记到当前对象流的句柄表
+     */
+    @SuppressWarnings("unchecked")
+    private Object read_segmented() throws IOException, ClassNotFoundException {
+        check_flag(FS_SEGMENTED, true);
+        byte kind = in.readByte();
+        Class<?> cl = read_classname(false, false);
+        int size = read_length();
+        int count = read_length();
+        int[] counts = new int[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            counts[i] = read_length();
+            lengths[i] = read_length();
+        }
+        Object[] elements;
+        Object container;
+        if (kind == FS_ARRAY) {
+            elements = (Object[]) Array.newInstance(cl, size);
+            container = elements;
+        } else if (kind == FS_COLLECTION) {
+            elements = new Object[size];
+            try {
+                container = cl.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new DeserializeException(e);
+            }
+        } else {
+            throw new DeserializeException("unexpected type flag");
+        }
+        handle(container);
+        int[] starts = new int[count];
+        for (int i = 1; i < count; i++) {
+            starts[i] = starts[i - 1] + counts[i - 1];
+        }
+        if (count > 0 && starts[count - 1] + counts[count - 1] != size) {
+            throw new DeserializeException("invalid data");
+        }
+        if (pool == null || count < 2) {
+            for (int i = 0; i < count; i++) {
+                segment(in).read_elements(counts[i], elements, starts[i]);
+            }
+        } else {
+            read_parallel(counts, lengths, starts, elements);
+        }
+        if (container != elements) {
+            ((Collection) container).addAll(Arrays.asList(elements));
+        }
+        return container;
+    }
+
+    /*
+     * 在 pool 中并行解码各分段：读取来源能提供视图时直接在视图上解码，否则将分段依次读入各自的数组，
+     * 读入的总量达到 MAX_STAGED_BYTES 时先解码已读入的一批，不把整个容器的数据同时留在堆上
+     */
+    private void read_parallel(int[] counts, int[] lengths, int[] starts, Object[] elements) {
+        int count = counts.length;
+        SerialSource[] sources = new SerialSource[count];
+        int from = 0;
+        long staged = 0;
+        for (int i = 0; i < count; i++) {
+            SerialSource view = in.slice(lengths[i]);
+            if (view == null) {
+                if (i > from && staged + lengths[i] > MAX_STAGED_BYTES) {
+                    decode_segments(sources, counts, starts, elements, from, i);
+                    from = i;
+                    staged = 0;
+                }
+                byte[] data = new byte[lengths[i]];
+                in.read(data, 0, lengths[i]);
+                view = Bytes.newBytes(data);
+                staged += lengths[i];
+            }
+            sources[i] = view;
+        }
+        decode_segments(sources, counts, starts, elements, from, count);
+    }
+
+    /*
+     * 解码分段 [from, to)，之后释放其数据
+     */
+    private void decode_segments(SerialSource[] sources, int[] counts, int[] starts, Object[] elements, int from,
+                                 int to) {
+        SegmentTask task = new SegmentTask(sources, counts, starts, elements, from, to);
+        if (ForkJoinTask.getPool() == pool) {
+            // 嵌套的分段容器在当前的工作线程中继续拆分
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        Arrays.fill(sources, from, to, null);
+    }
+
+    /*
+     * 以与当前实例相同的设置、新的句柄表与类表读取 source 的 Deserializer，用于解码一个分段
+     */
+    private Deserializer segment(SerialSource source) {
+        Deserializer segment = new Deserializer(source);
+        segment.session = session;
+        segment.sessionActive = sessionActive;
+        segment.compact = compact;
+        segment.indexed = indexed;
+        segment.pool = pool;
+        return segment;
+    }
+
+    /*
+     * 二分分段区间 [from, to)，每个分段的元素读入 elements 中对应的位置
+     */
+    private final class SegmentTask extends RecursiveAction {
+        private final SerialSource[] sources;
+        private final int[] counts;
+        private final int[] starts;
+        private final Object[] elements;
+        private final int from;
+        private final int to;
+
+        SegmentTask(SerialSource[] sources, int[] counts, int[] starts, Object[] elements, int from, int to) {
+            this.sources = sources;
+            this.counts = counts;
+            this.starts = starts;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                SerialSource source = sources[from];
+                try {
+                    segment(source).read_elements(counts[from], elements, starts[from]);
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new DeserializeException(e);
+                }
+                if (source.readable() != 0) {
+                    throw new DeserializeException("invalid data");
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SegmentTask(sources, counts, starts, elements, from, mid),
+                    new SegmentTask(sources, counts, starts, elements, mid, to));
+        }
+    }
+
+    private Object read_handled() throws IOException, ClassNotFoundException {
+        in.readByte();
+        int idx = read_length();
+        if (idx < 0 || idx >= handledSize) {
             throw new DeserializeException("read handled error.");
         }
-        return o;
+        if (handled[idx] == null) {
+            // 句柄位于投影时跳过的值中
+            materialize(true, idx);
+        }
+        return handled[idx];
+    }
+
+    private void handle(Object o) {
+        if (handledSize == handled.length) {
+            handled = Arrays.copyOf(handled, handledSize << 1);
+        }
+        handled[handledSize++] = o;
     }
 
     @SuppressWarnings("unchecked")
     private Map read_map() throws IOException, ClassNotFoundException {
         check_flag(Constants.FS_MAP, true);
         Class<?> mapCl = read_classname(false, true);
-        int size = bytes.readInt();
+        int size = read_length();
         Class lastKeyClass = null;
         Class lastValClass = null;
         Map res;
         try {
             res = (Map) mapCl.newInstance();
-            handled.add(res);
+            handle(res);
         } catch (InstantiationException | IllegalAccessException e) {
             throw new DeserializeException(e);
         }
@@ -188,60 +607,68 @@ public class Deserializer {
 
         for (int i = 0; i < size; i++) {
             // read key
-            tf = bytes.peekByte();
+            tf = peek_flag();
             switch (tf) {
+                case FC_NULL:
+                    in.skipBytes(1);
+                    key = null;
+                    break;
                 case FC_LAST_KEY_TYPE:
-                    bytes.skipBytes(1);
+                    in.skipBytes(1);
                     key = read_object(false, true, false, lastKeyClass);
                     break;
                 case FS_REF_PRIMITIVE:
                     key = read_ref_primitive(true, true);
+                    lastKeyClass = key.getClass();
                     break;
+                case FS_SHARED_STRING:
                 case FS_STRING:
                     lastKeyClass = String.class;
                     key = read_string();
-                    handled.add(key);
                     break;
                 case FC_REFERENCE:
                     key = read_handled();
-                    lastKeyClass = key.getClass();
                     break;
                 case FS_CLASS:
                     key = read_class(true, true);
                     lastKeyClass = key.getClass();
                     break;
                 default:
-                    lastKeyClass = Class.forName(bytes.peekString().replace("/", "."));
-                    key = read_object(true, false, false, null);
+                    lastKeyClass = read_classname(false, false);
+                    key = read_object(false, false, false, lastKeyClass);
                     break;
             }
 
             // read val
-            tf = bytes.peekByte();
+            tf = peek_flag();
             switch (tf) {
+                case FC_NULL:
+                    in.skipBytes(1);
+                    val = null;
+                    break;
                 case FC_LAST_VALUE_TYPE:
-                    bytes.skipBytes(1);
+                    in.skipBytes(1);
                     val = read_object(false, true, false, lastValClass);
                     break;
                 case FS_REF_PRIMITIVE:
                     val = read_ref_primitive(true, true);
+                    lastValClass = val.getClass();
                     break;
+                case FS_SHARED_STRING:
                 case FS_STRING:
                     lastValClass = String.class;
                     val = read_string();
-                    handled.add(val);
                     break;
                 case FC_REFERENCE:
                     val = read_handled();
-                    lastValClass = val.getClass();
                     break;
                 case FS_CLASS:
                     val = read_class(true, true);
                     lastValClass = val.getClass();
                     break;
                 default:
-                    lastValClass = Class.forName(bytes.peekString().replace("/", "."));
-                    val = read_object(true, false, false, null);
+                    lastValClass = read_classname(false, false);
+                    val = read_object(false, false, false, lastValClass);
                     break;
             }
 
@@ -251,9 +678,12 @@ public class Deserializer {
     }
 
     private Object read_array(final boolean sign) throws IOException, ClassNotFoundException {
+        if (sign && in.peekByte() == FS_SEGMENTED) {
+            return read_segmented();
+        }
         check_flag(Constants.FS_ARRAY, sign);
-        String cl = bytes.readString();
-        int len = bytes.readInt();
+        String cl = in.readString();
+        int len = read_length();
         Object arr;
         if (TypeUtil.isArraySign(cl)) {
             int w = 0;
@@ -269,9 +699,9 @@ public class Deserializer {
                 realCl = arr.getClass();
             }
             arr = Array.newInstance(realCl, len);
-            handled.add(arr);
+            handle(arr);
             for (int i = 0; i < len; i++) {
-                byte f = bytes.readByte();
+                byte f = in.readByte();
                 switch (f) {
                     case FC_NULL:
                         Array.set(arr, i, null);
@@ -280,7 +710,7 @@ public class Deserializer {
                         Array.set(arr, i, read_array(true));
                         break;
                     case Constants.FC_REFERENCE:
-                        bytes.skipBytes(-1);
+                        in.skipBytes(-1);
                         Array.set(arr, i, read_handled());
                         break;
                     default:
@@ -293,92 +723,54 @@ public class Deserializer {
                 ct = Class.forName(cl.substring(1, cl.length() - 1).replace('/', '.'));
             }
             arr = Array.newInstance(ct, len);
-            handled.add(arr);
+            handle(arr);
 
             if (ct.isPrimitive()) {
-                if (ct == Integer.TYPE) {
-                    // int array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readInt());
-                    }
-                } else if (ct == Byte.TYPE) {
-                    // byte array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte());
-                    }
-                } else if (ct == Long.TYPE) {
-                    // long array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readLong());
-                    }
-                } else if (ct == Float.TYPE) {
-                    // float array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readFloat());
-                    }
-                } else if (ct == Double.TYPE) {
-                    // double array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readDouble());
-                    }
-                } else if (ct == Short.TYPE) {
-                    // short array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readShort());
-                    }
-                } else if (ct == Character.TYPE) {
-                    // char array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readChar());
-                    }
-                } else if (ct == Boolean.TYPE) {
-                    // boolean array
-                    for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readBoolean());
-                    }
-                } else {
-                    throw new InternalError();
+                boolean swap = false;
+                if (ct != Boolean.TYPE && ct != Byte.TYPE) {
+                    swap = PrimitiveArrays.swapOf(in.readByte());
                 }
+                in.readArray(arr, swap);
             } else if (TypeUtil.isRefPrimitive(ct)) {
                 if (ct == Integer.class) {
                     // Integer array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readInt());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readInt());
                     }
                 } else if (ct == Byte.class) {
                     // Byte array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readByte());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readByte());
                     }
                 } else if (ct == Long.class) {
                     // Long array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readLong());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readLong());
                     }
                 } else if (ct == Float.class) {
                     // Float array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readFloat());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readFloat());
                     }
                 } else if (ct == Double.class) {
                     // Double array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readDouble());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readDouble());
                     }
                 } else if (ct == Short.class) {
                     // Short array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readShort());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readShort());
                     }
                 } else if (ct == Character.class) {
                     // Character array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readChar());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readChar());
                     }
                 } else if (ct == Boolean.class) {
                     // Boolean array
                     for (int i = 0; i < len; i++) {
-                        Array.set(arr, i, bytes.readByte() == FC_NULL ? null : bytes.readBoolean());
+                        Array.set(arr, i, in.readByte() == FC_NULL ? null : in.readBoolean());
                     }
                 } else {
                     throw new InternalError();
@@ -386,16 +778,19 @@ public class Deserializer {
             } else if (String.class == ct) {
                 // String array
                 for (int i = 0; i < len; i++) {
-                    byte f = bytes.readByte();
+                    byte f = in.readByte();
                     switch (f) {
                         case FC_NULL:
                             Array.set(arr, i, null);
                             break;
                         case Constants.FC_NON_NULL:
-                            Array.set(arr, i, bytes.readString());
+                            // 写出方为数组中的字符串分配了句柄
+                            String str = in.readString();
+                            handle(str);
+                            Array.set(arr, i, str);
                             break;
                         case Constants.FC_REFERENCE:
-                            bytes.skipBytes(-1);
+                            in.skipBytes(-1);
                             Array.set(arr, i, read_handled());
                             break;
                         default:
@@ -405,7 +800,7 @@ public class Deserializer {
             } else if (Collection.class.isAssignableFrom(ct)) {
                 // Collection array
                 for (int i = 0; i < len; i++) {
-                    byte f = bytes.readByte();
+                    byte f = in.readByte();
                     switch (f) {
                         case FC_NULL:
                             Array.set(arr, i, null);
@@ -414,7 +809,7 @@ public class Deserializer {
                             Array.set(arr, i, read_collection());
                             break;
                         case Constants.FC_REFERENCE:
-                            bytes.skipBytes(-1);
+                            in.skipBytes(-1);
                             Array.set(arr, i, read_handled());
                             break;
                         default:
@@ -424,7 +819,7 @@ public class Deserializer {
             } else if (Enum.class.isAssignableFrom(ct)) {
                 // Enum array
                 for (int i = 0; i < len; i++) {
-                    byte f = bytes.readByte();
+                    byte f = in.readByte();
                     switch (f) {
                         case FC_NULL:
                             Array.set(arr, i, null);
@@ -433,7 +828,7 @@ public class Deserializer {
                             Array.set(arr, i, read_enum(true, true));
                             break;
                         case Constants.FC_REFERENCE:
-                            bytes.skipBytes(-1);
+                            in.skipBytes(-1);
                             Array.set(arr, i, read_handled());
                             break;
                         default:
@@ -443,7 +838,7 @@ public class Deserializer {
             } else if (Map.class.isAssignableFrom(ct)) {
                 // Map array
                 for (int i = 0; i < len; i++) {
-                    byte f = bytes.readByte();
+                    byte f = in.readByte();
                     switch (f) {
                         case FC_NULL:
                             Array.set(arr, i, null);
@@ -452,7 +847,7 @@ public class Deserializer {
                             Array.set(arr, i, read_map());
                             break;
                         case Constants.FC_REFERENCE:
-                            bytes.skipBytes(-1);
+                            in.skipBytes(-1);
                             Array.set(arr, i, read_handled());
                             break;
                         default:
@@ -462,7 +857,7 @@ public class Deserializer {
             } else if (ct == Class.class) {
                 // Class array
                 for (int i = 0; i < len; i++) {
-                    byte f = bytes.readByte();
+                    byte f = in.readByte();
                     switch (f) {
                         case FC_NULL:
                             Array.set(arr, i, null);
@@ -471,7 +866,7 @@ public class Deserializer {
                             Array.set(arr, i, read_class(true, true));
                             break;
                         case Constants.FC_REFERENCE:
-                            bytes.skipBytes(-1);
+                            in.skipBytes(-1);
                             Array.set(arr, i, read_handled());
                             break;
                         default:
@@ -481,7 +876,7 @@ public class Deserializer {
             } else {
                 // Object array
                 for (int i = 0; i < len; i++) {
-                    byte f = bytes.readByte();
+                    byte f = in.readByte();
                     switch (f) {
                         case FC_NULL:
                             Array.set(arr, i, null);
@@ -490,7 +885,7 @@ public class Deserializer {
                             Array.set(arr, i, read_object(true, true, true, null));
                             break;
                         case Constants.FC_REFERENCE:
-                            bytes.skipBytes(-1);
+                            in.skipBytes(-1);
                             Array.set(arr, i, read_handled());
                             break;
                         default:
@@ -504,28 +899,32 @@ public class Deserializer {
 
     private Object read_object(final boolean readClassName, final boolean checkClassFlag, final boolean readClassFlag, Class<?> cl) throws IOException, ClassNotFoundException {
         Object o;
+        // 投影只作用于当前对象，字段值由 read_field 另行设置
+        Projection p = projection;
+        projection = null;
         try {
             depth++;
             Class oCl;
             if (readClassName) {
                 oCl = read_classname(checkClassFlag, readClassFlag);
             } else {
-                if (cl == String.class || TypeUtil.isRefPrimitive(cl)) {
-                    byte tb = bytes.peekByte();
+                if (cl == String.class || cl == Class.class || TypeUtil.isRefPrimitive(cl)) {
+                    // 这些值由各自的读取方法登记句柄
+                    byte tb = peek_flag();
                     switch (tb) {
                         case FS_REF_PRIMITIVE:
                             o = read_ref_primitive(true, true);
                             break;
+                        case FS_SHARED_STRING:
                         case FS_STRING:
                             o = read_string();
                             break;
                         case FS_CLASS:
-                            o = read_classname(true, true);
+                            o = read_class(true, true);
                             break;
                         default:
                             throw new InternalError();
                     }
-                    handled.add(o);
                     return o;
                 } else {
                     oCl = cl;
@@ -534,51 +933,21 @@ public class Deserializer {
             ClassDescriptor classDescriptor = ClassDescriptor.resolve(oCl);
 
             o = classDescriptor.getConstructor().newInstance();
-            handled.add(o);
+            handle(o);
 
             check_flag(FC_OBJECT, true);
             ClassDescriptor.FieldReflector fieldReflector = classDescriptor.getFieldReflector();
 
             // set primitive variables
-            fieldReflector.setPrimValOfObj(o, bytes.readBytes());
+            read_primitives(fieldReflector, o);
 
             // set reference variables
-            Integer[] refKeys = fieldReflector.getRefKeys();
-            long[] offsets = fieldReflector.getOffsets();
-            for (Integer refKey : refKeys) {
-                byte ff = bytes.peekByte();
-                switch (ff) {
-                    case FC_NULL:
-                        bytes.readByte();
-                        fieldReflector.setValueTo(o, refKey, null);
-                        break;
-                    case Constants.FC_REFERENCE:
-                        fieldReflector.setValueTo(o, refKey, read_handled());
-                        break;
-                    case Constants.FS_COLLECTION:
-                        fieldReflector.setValueTo(o, refKey, read_collection());
-                        break;
-                    case Constants.FS_MAP:
-                        fieldReflector.setValueTo(o, refKey, read_map());
-                        break;
-                    case Constants.FS_ARRAY:
-                        fieldReflector.setValueTo(o, refKey, read_array(true));
-                        break;
-                    case Constants.FS_ENUM:
-                        fieldReflector.setValueTo(o, refKey, read_enum(false, false));
-                        break;
-                    case Constants.FS_REF_PRIMITIVE:
-                        fieldReflector.setValueTo(o, refKey, read_ref_primitive(true, true));
-                        break;
-                    case Constants.FS_STRING:
-                        fieldReflector.setValueTo(o, refKey, read_string());
-                        break;
-                    default:
-                        fieldReflector.setValueTo(o, refKey, read_object(true, true, true, null));
-                }
+            int[] refKeys = fieldReflector.getRefKeys();
+            for (int refKey : refKeys) {
+                read_field(o, fieldReflector, refKey, p);
             } // loop end
 
-            read_super(o, classDescriptor.getFather());
+            read_super(o, classDescriptor.getFather(), p);
 
             check_flag(Constants.FC_OBJECT_END, true);
 
@@ -595,8 +964,28 @@ public class Deserializer {
         if (checkFlag) {
             check_flag(Constants.FC_CLASS, readFlag);
         }
-        String clStr = bytes.readString();
-        return Class.forName(clStr.replace('/', '.'));
+        // 类名首次出现时写出完整名称并分配 id，之后只写 id
+        int id = in.readLen();
+        if (id > 0) {
+            int shared = sessionActive ? session.classCount() : 0;
+            if (id <= shared) {
+                return session.classAt(id - 1);
+            }
+            id -= shared;
+            if (id > classesSize) {
+                throw new DeserializeException(String.format("unknown class id %d", id));
+            }
+            if (classes[id - 1] == null) {
+                materialize(false, id - 1);
+            }
+            return classes[id - 1];
+        }
+        Class cl = Class.forName(in.readString().replace('/', '.'));
+        if (classesSize == classes.length) {
+            classes = Arrays.copyOf(classes, classesSize << 1);
+        }
+        classes[classesSize++] = cl;
+        return cl;
     }
 
     private Class read_class(boolean checkFlag, boolean readFlag) throws IOException, ClassNotFoundException {
@@ -604,96 +993,289 @@ public class Deserializer {
             check_flag(FS_CLASS, readFlag);
         }
         Class cl = read_classname(false, false);
-        handled.add(cl);
+        handle(cl);
         return cl;
     }
 
     private void check_flag(byte expected, boolean read) {
-        byte f = bytes.peekByte();
+        byte f = in.peekByte();
         if (f != expected) {
             throw new DeserializeException("unexpected type flag");
         }
 
         if (read) {
-            bytes.skipBytes(1);
+            in.skipBytes(1);
         }
     }
 
-    private void read_super(Object o, ClassDescriptor father) {
+    private void read_super(Object o, ClassDescriptor father, Projection p) throws IOException, ClassNotFoundException {
         check_flag(Constants.FC_SUPER, true);
-        byte f = bytes.readByte();
+        byte f = in.readByte();
         switch (f) {
             case FC_NULL:
                 break;
             case Constants.FC_SUPER_INFO:
                 ClassDescriptor.FieldReflector fieldReflector = father.getFieldReflector();
-                fieldReflector.setPrimValOfObj(o, bytes.readBytes());
-                Integer[] refKeys = fieldReflector.getRefKeys();
-                long[] offsets = fieldReflector.getOffsets();
-
-                for (Integer refKey : refKeys) {
-                    FieldDescriptor fieldDescriptor = fieldReflector.getFieldDescriptor(refKey);
-                    byte ff = bytes.peekByte();
-                    switch (ff) {
-                        case FC_NULL:
-                            bytes.skipBytes(1);
-                            fieldReflector.setValueTo(o, refKey, null);
-                            break;
-                        case FC_REFERENCE:
-                            fieldReflector.setValueTo(o, refKey, read_handled());
-                            break;
-                        default:
-                            fieldReflector.setValueTo(o, refKey, readObject());
-                    }
+                read_primitives(fieldReflector, o);
+                int[] refKeys = fieldReflector.getRefKeys();
+
+                for (int refKey : refKeys) {
+                    read_field(o, fieldReflector, refKey, p);
                 }
-                read_super(o, father.getFather());
+                read_super(o, father.getFather(), p);
                 break;
             default:
                 throw new InternalError();
         }
     }
 
+    /*
+     * [fc_skippable + value_length] + value + [handle_count + class_count]
+     * 投影 p 不需要该字段时不赋值，带长度前缀的值直接跳过并为其预留句柄与类的位置
+     */
+    private void read_field(Object o, ClassDescriptor.FieldReflector fieldReflector, int refKey, Projection p) throws IOException, ClassNotFoundException {
+        boolean wanted = true;
+        Projection child = null;
+        if (p != null) {
+            String name = fieldReflector.getFieldDescriptor(refKey).getName();
+            wanted = p.fields.containsKey(name);
+            child = p.fields.get(name);
+        }
+        boolean prefixed = in.peekByte() == FC_SKIPPABLE;
+        if (prefixed) {
+            in.skipBytes(1);
+            int len = in.readInt();
+            if (!wanted && in.seekable()) {
+                skip_value(len);
+                return;
+            }
+        }
+        projection = wanted && in.peekByte() == FC_CLASS ? child : null;
+        Object value = read_value();
+        projection = null;
+        if (prefixed) {
+            in.readVarInt();
+            in.readVarInt();
+        }
+        if (wanted) {
+            fieldReflector.setValueTo(o, refKey, value);
+        }
+    }
+
+    /*
+     * 引用字段的值
+     */
+    private Object read_value() throws IOException, ClassNotFoundException {
+        switch (peek_flag()) {
+            case FC_NULL:
+                in.readByte();
+                return null;
+            case Constants.FC_REFERENCE:
+                return read_handled();
+            case Constants.FS_COLLECTION:
+                return read_collection();
+            case Constants.FS_MAP:
+                return read_map();
+            case Constants.FS_ARRAY:
+                return read_array(true);
+            case FS_SEGMENTED:
+                return read_segmented();
+            case Constants.FS_ENUM:
+                return read_enum(false, false);
+            case Constants.FS_REF_PRIMITIVE:
+                return read_ref_primitive(true, true);
+            case Constants.FS_SHARED_STRING:
+            case Constants.FS_STRING:
+                return read_string();
+            case Constants.FS_CLASS:
+                return read_class(true, true);
+            default:
+                return read_object(true, true, true, null);
+        }
+    }
+
+    /*
+     * 跳过 len 字节的值，读出其中的句柄数与类数并预留位置，预留的位置为 null
+     */
+    private void skip_value(int len) {
+        long offset = in.offset();
+        in.skipBytes(len);
+        int handleCount = in.readVarInt();
+        int classCount = in.readVarInt();
+        skipped.add(new Skipped(offset, handledSize, handleCount, classesSize, classCount));
+        if (handledSize + handleCount > handled.length) {
+            handled = Arrays.copyOf(handled, Math.max(handledSize + handleCount, handled.length << 1));
+        }
+        handledSize += handleCount;
+        if (classesSize + classCount > classes.length) {
+            classes = Arrays.copyOf(classes, Math.max(classesSize + classCount, classes.length << 1));
+        }
+        classesSize += classCount;
+    }
+
+    /*
+     * 回到包含句柄（handle 为 true）或类下标 idx 的被跳过的值，完整解码一次以填入预留的位置，再回到当前位置
+     */
+    private void materialize(boolean handle, int idx) throws IOException, ClassNotFoundException {
+        Skipped s = null;
+        for (Skipped one : skipped) {
+            if (handle ? one.hasHandle(idx) : one.hasClass(idx)) {
+                s = one;
+                break;
+            }
+        }
+        if (s == null) {
+            throw new DeserializeException(String.format("%s %d refers to nothing", handle ? "handle" : "class id", idx));
+        }
+        skipped.remove(s);
+        long pos = in.offset();
+        int savedHandles = handledSize;
+        int savedClasses = classesSize;
+        Projection savedProjection = projection;
+        in.seek(s.offset);
+        handledSize = s.handleStart;
+        classesSize = s.classStart;
+        projection = null;
+        try {
+            read_value();
+        } finally {
+            handledSize = savedHandles;
+            classesSize = savedClasses;
+            projection = savedProjection;
+        }
+        in.seek(pos);
+    }
+
+    private static Projection project(String... fieldPaths) {
+        Projection root = new Projection();
+        for (String path : fieldPaths) {
+            Projection node = root;
+            String[] names = path.split("\\.");
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                if (i == names.length - 1) {
+                    node.fields.put(name, null);
+                    break;
+                }
+                if (node.fields.containsKey(name) && node.fields.get(name) == null) {
+                    // 已经需要整个字段
+                    break;
+                }
+                node = node.fields.computeIfAbsent(name, k -> new Projection());
+            }
+        }
+        return root;
+    }
+
+    /*
+     * 需要的字段名，值为该字段中对象需要的字段，为 null 时需要整个字段
+     */
+    private static final class Projection {
+        final Map<String, Projection> fields = new HashMap<>();
+    }
+
+    /*
+     * 被跳过的值的位置，以及为其预留的句柄与类的范围
+     */
+    private static final class Skipped {
+        final long offset;
+        final int handleStart;
+        final int handleCount;
+        final int classStart;
+        final int classCount;
+
+        Skipped(long offset, int handleStart, int handleCount, int classStart, int classCount) {
+            this.offset = offset;
+            this.handleStart = handleStart;
+            this.handleCount = handleCount;
+            this.classStart = classStart;
+            this.classCount = classCount;
+        }
+
+        boolean hasHandle(int idx) {
+            return idx >= handleStart && idx < handleStart + handleCount;
+        }
+
+        boolean hasClass(int idx) {
+            return idx >= classStart && idx < classStart + classCount;
+        }
+    }
+
     private Object read_ref_primitive(final boolean flag, final boolean clSign) {
+        if (flag && compact && in.peekByte() != FS_REF_PRIMITIVE) {
+            Object res = read_boxed();
+            handle(res);
+            return res;
+        }
         if (flag) {
-            bytes.readByte();
+            in.readByte();
         }
         char tc;
 
         if (clSign) {
-            tc = bytes.readChar();
+            tc = in.readChar();
         } else {
-            tc = (char) bytes.peekShort();
+            tc = (char) in.peekShort();
         }
         Object res;
         switch (tc) {
             case 'Z':
-                res = bytes.readBoolean();
+                res = in.readBoolean();
                 break;
             case 'B':
-                res = bytes.readByte();
+                res = in.readByte();
                 break;
             case 'C':
-                res = bytes.readChar();
+                res = in.readChar();
                 break;
             case 'S':
-                res = bytes.readShort();
+                res = in.readShort();
                 break;
             case 'I':
-                res = bytes.readInt();
+                res = in.readInt();
                 break;
             case 'F':
-                res = bytes.readFloat();
+                res = in.readFloat();
                 break;
             case 'J':
-                res = bytes.readLong();
+                res = in.readLong();
                 break;
             case 'D':
-                res = bytes.readDouble();
+                res = in.readDouble();
                 break;
             default:
                 throw new InternalError();
         }
-        handled.add(res);
+        handle(res);
         return res;
     }
+
+    /*
+     * 紧凑格式中以单字节标签开头的装箱类型
+     */
+    private Object read_boxed() {
+        byte tag = in.readByte();
+        switch (tag) {
+            case FS_INT:
+                return in.readVarInt();
+            case FS_LONG:
+                return in.readVarLong();
+            case FS_TRUE:
+                return Boolean.TRUE;
+            case FS_FALSE:
+                return Boolean.FALSE;
+            case FS_BYTE:
+                return in.readByte();
+            case FS_SHORT:
+                return (short) in.readVarInt();
+            case FS_CHAR:
+                return (char) in.readVarInt();
+            case FS_FLOAT:
+                return in.readFloat();
+            case FS_DOUBLE:
+                return in.readDouble();
+            default:
+                throw new DeserializeException(String.format("invalid boxed primitive tag %d", tag));
+        }
+    }
 }
@@ -0,0 +1,428 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.InvalidIndexException;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 堆外字节缓冲区，数据存放在从 {@link SlabPool} 获取的直接内存块中，大对象图的序列化数据不会进入年轻代。
+ * <p>
+ * 与 {@link Bytes} 一样拥有自增特性，格式完全兼容。扩容或 {@link #clear()} 时旧内存块归还池中；
+ * 实例带有引用计数，计数归零时内存块归还池中，此后不可再使用。
+ * <p>
+ * 写入使用 slab 自身的 position（始终等于 limit），读取使用绝对位置。
+ *
+ * @see Bytes#newDirectBytes()
+ * @since 1.8
+ */
+public final class DirectBytes implements SerialSink, SerialSource {
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int TRANSFER_SIZE = 8192;
+
+    private ByteBuffer slab;
+    /* 读位置 */
+    private int position;
+    /* 写位置，可读区域的末尾 */
+    private int limit;
+    private int mark = -1;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    DirectBytes(int initialCapacity) {
+        this.slab = SlabPool.acquire(initialCapacity);
+    }
+
+    DirectBytes() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /*------------------- reference count -----------------*/
+
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    public DirectBytes retain() {
+        for (; ; ) {
+            int cnt = refCnt.get();
+            if (cnt <= 0) throw new IllegalStateException("DirectBytes has been released");
+            if (refCnt.compareAndSet(cnt, cnt + 1)) return this;
+        }
+    }
+
+    /**
+     * 引用计数减一，归零时将内存块归还池中
+     *
+     * @return 内存块是否已被归还
+     */
+    public boolean release() {
+        int cnt = refCnt.decrementAndGet();
+        if (cnt < 0) {
+            refCnt.incrementAndGet();
+            throw new IllegalStateException("DirectBytes has been released");
+        }
+        if (cnt == 0) {
+            SlabPool.recycle(slab);
+            slab = null;
+            return true;
+        }
+        return false;
+    }
+
+    /*------------------- state -----------------*/
+
+    @Override
+    public int readable() {
+        return limit - position;
+    }
+
+    public int capacity() {
+        return slab().capacity();
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public void mark() {
+        mark = position;
+    }
+
+    public DirectBytes reset() {
+        if (mark < 0) throw new InvalidIndexException(String.format("Invalid mark position %d", mark));
+        position = mark;
+        return this;
+    }
+
+    /**
+     * 丢弃所有数据，保留当前内存块
+     */
+    public DirectBytes discard() {
+        slab().clear();
+        position = 0;
+        limit = 0;
+        mark = -1;
+        return this;
+    }
+
+    /**
+     * 丢弃所有数据，若内存块已扩容则归还池中并换回默认大小的内存块
+     */
+    public void clear() {
+        if (slab().capacity() > DEFAULT_CAPACITY) {
+            SlabPool.recycle(slab);
+            slab = SlabPool.acquire(DEFAULT_CAPACITY);
+        }
+        discard();
+    }
+
+    /*------------------- write -----------------*/
+
+    @Override
+    public void writeBoolean(boolean v) {
+        ensureWritable(1).put((byte) (v ? 1 : 0));
+        limit++;
+    }
+
+    @Override
+    public void writeByte(byte v) {
+        ensureWritable(1).put(v);
+        limit++;
+    }
+
+    @Override
+    public void writeShort(int v) {
+        ensureWritable(2).putShort((short) v);
+        limit += 2;
+    }
+
+    @Override
+    public void writeChar(int v) {
+        ensureWritable(2).putChar((char) v);
+        limit += 2;
+    }
+
+    @Override
+    public void writeInt(int v) {
+        ensureWritable(4).putInt(v);
+        limit += 4;
+    }
+
+    @Override
+    public void writeLong(long v) {
+        ensureWritable(8).putLong(v);
+        limit += 8;
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        ensureWritable(4).putFloat(v);
+        limit += 4;
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        ensureWritable(8).putDouble(v);
+        limit += 8;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        Objects.requireNonNull(b);
+        ensureWritable(len).put(b, off, len);
+        limit += len;
+    }
+
+    @Override
+    public void writeArray(Object array) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        if (bytes > Integer.MAX_VALUE - limit) {
+            throw new InvalidIndexException(String.format("Invalid limit %d", limit + bytes));
+        }
+        ByteBuffer cur = ensureWritable((int) bytes);
+        PrimitiveArrays.copy(array, PrimitiveArrays.base(array), null, address(cur) + limit, bytes, 1, false);
+        limit += (int) bytes;
+        cur.position(limit);
+    }
+
+    @Override
+    public int writerIndex() {
+        return limit;
+    }
+
+    @Override
+    public void setInt(int index, int v) {
+        if (index < 0 || index + 4 > limit) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", index + 4, 0, limit));
+        }
+        slab().putInt(index, v);
+    }
+
+    /*------------------- read -----------------*/
+
+    @Override
+    public byte peekByte() {
+        checkReadable(1);
+        return slab().get(position);
+    }
+
+    @Override
+    public short peekShort() {
+        checkReadable(2);
+        return slab().getShort(position);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        if (position + n < 0 || position + n > limit) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", position + n, 0, limit));
+        }
+        return position += n;
+    }
+
+    @Override
+    public boolean seekable() {
+        return true;
+    }
+
+    @Override
+    public long offset() {
+        return position;
+    }
+
+    @Override
+    public void seek(long offset) {
+        if (offset < 0 || offset > limit) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", offset, 0, limit));
+        }
+        position = (int) offset;
+    }
+
+    @Override
+    public boolean readBoolean() {
+        checkReadable(1);
+        return slab().get(position++) != 0;
+    }
+
+    @Override
+    public byte readByte() {
+        checkReadable(1);
+        return slab().get(position++);
+    }
+
+    @Override
+    public short readShort() {
+        checkReadable(2);
+        position += 2;
+        return slab().getShort(position - 2);
+    }
+
+    @Override
+    public char readChar() {
+        checkReadable(2);
+        position += 2;
+        return slab().getChar(position - 2);
+    }
+
+    @Override
+    public int readInt() {
+        checkReadable(4);
+        position += 4;
+        return slab().getInt(position - 4);
+    }
+
+    @Override
+    public long readLong() {
+        checkReadable(8);
+        position += 8;
+        return slab().getLong(position - 8);
+    }
+
+    @Override
+    public float readFloat() {
+        checkReadable(4);
+        position += 4;
+        return slab().getFloat(position - 4);
+    }
+
+    @Override
+    public double readDouble() {
+        checkReadable(8);
+        position += 8;
+        return slab().getDouble(position - 8);
+    }
+
+    @Override
+    public String readString() {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String peekString() {
+        int m = position;
+        try {
+            return readString();
+        } finally {
+            position = m;
+        }
+    }
+
+    @Override
+    public byte[] readBytes() {
+        int len = readLen();
+        checkReadable(len);
+        byte[] res = new byte[len];
+        ByteBuffer src = slab().duplicate();
+        src.limit(position + len).position(position);
+        src.get(res);
+        position += len;
+        return res;
+    }
+
+    @Override
+    public void read(byte[] b, int off, int len) {
+        checkReadable(len);
+        ByteBuffer src = slab().duplicate();
+        src.limit(position + len).position(position);
+        src.get(b, off, len);
+        position += len;
+    }
+
+    @Override
+    public void readArray(Object array, boolean swap) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        if (bytes > Integer.MAX_VALUE) throw new InvalidIndexException(String.format("Invalid len %d", bytes));
+        checkReadable((int) bytes);
+        PrimitiveArrays.copy(null, address(slab()) + position, array, PrimitiveArrays
+                .base(array), bytes, PrimitiveArrays.scale(array), swap);
+        position += (int) bytes;
+    }
+
+    /*------------------- transfer -----------------*/
+
+    /**
+     * 拷贝出全部数据
+     */
+    public byte[] compactData() {
+        byte[] bytes = new byte[limit];
+        ByteBuffer src = slab().duplicate();
+        src.flip();
+        src.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 将全部数据写入 channel，不经过堆内存
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer src = slab().duplicate();
+        src.flip();
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    /**
+     * 将全部数据分块写入 os，使用的堆内存不超过 TRANSFER_SIZE
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        ByteBuffer src = slab().duplicate();
+        src.flip();
+        byte[] chunk = new byte[Math.min(TRANSFER_SIZE, Math.max(1, limit))];
+        while (src.hasRemaining()) {
+            int n = Math.min(chunk.length, src.remaining());
+            src.get(chunk, 0, n);
+            os.write(chunk, 0, n);
+        }
+    }
+
+    /*------------------- private methods -----------------*/
+
+    private ByteBuffer slab() {
+        if (slab == null) throw new IllegalStateException("DirectBytes has been released");
+        return slab;
+    }
+
+    private ByteBuffer ensureWritable(int n) {
+        ByteBuffer cur = slab();
+        if (cur.remaining() < n) {
+            int need = limit + n;
+            if (need < 0) throw new InvalidIndexException(String.format("Invalid limit %d", need));
+            int advice = cur.capacity() + (cur.capacity() >> 1);
+            ByteBuffer grown = SlabPool.acquire(advice < 0 ? need : Math.max(need, advice));
+            cur.flip();
+            grown.put(cur);
+            SlabPool.recycle(cur);
+            slab = cur = grown;
+        }
+        return cur;
+    }
+
+    private static long address(ByteBuffer buf) {
+        return ((DirectBuffer) buf).address();
+    }
+
+    private void checkReadable(int n) {
+        // 释放后的读取与写入一样抛出 IllegalStateException，且不移动 position
+        slab();
+        if (position + n > limit || n < 0) {
+            throw new InvalidIndexException(String.format("%d out of bound %d - %d", position + n, position, limit));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectBytes{" + "position=" + position + ", limit=" + limit + ", capacity=" + (slab == null ? 0 : slab
+                .capacity()) + ", refCnt=" + refCnt.get() + '}';
+    }
+}
@@ -0,0 +1,124 @@
+package cn.zzu.ss.core;
+
+import java.util.Arrays;
+
+/**
+ * 序列化时已写出对象的句柄表，以对象身份（identity）作为键，句柄序号作为值。
+ * <p>
+ * 采用开放寻址（线性探测）的方式存储，键值均放在数组中，不产生装箱对象，
+ * 查找与分配句柄均为 O(1)。
+ *
+ * @see java.io.ObjectOutputStream
+ * @since 1.8
+ */
+final class HandleTable {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /* keys 与 values 一一对应，keys[i] == null 表示空槽 */
+    private Object[] keys;
+    private int[] values;
+    /* 表中的实际条目数 */
+    private int entries;
+    /* 已分配的句柄数，即下一个句柄的序号 */
+    private int size;
+    private int threshold;
+
+    HandleTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    HandleTable(int initialCapacity) {
+        int cap = Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1;
+        keys = new Object[cap];
+        values = new int[cap];
+        threshold = (int) (cap * LOAD_FACTOR);
+    }
+
+    /**
+     * 为对象分配下一个句柄
+     *
+     * @return 分配的句柄
+     */
+    int assign(Object o) {
+        int handle = size++;
+        int i = indexOf(o, keys);
+        if (keys[i] == null) {
+            if (entries >= threshold) {
+                grow();
+                i = indexOf(o, keys);
+            }
+            keys[i] = o;
+            entries++;
+        }
+        values[i] = handle;
+        return handle;
+    }
+
+    /**
+     * 跳过一个句柄：读取方会为该值登记句柄，但写出方不需要引用它（例如装箱类型）
+     */
+    void reserve() {
+        size++;
+    }
+
+    /**
+     * 查找对象的句柄
+     *
+     * @return 句柄，若对象尚未写出则返回 -1
+     */
+    int lookup(Object o) {
+        int i = indexOf(o, keys);
+        return keys[i] == null ? -1 : values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (keys.length > DEFAULT_CAPACITY && entries < (keys.length >>> 3)) {
+            // 表曾经被撑大，而最近一次使用的条目很少，直接回收大数组
+            keys = new Object[DEFAULT_CAPACITY];
+            values = new int[DEFAULT_CAPACITY];
+            threshold = (int) (DEFAULT_CAPACITY * LOAD_FACTOR);
+        } else if (entries > 0) {
+            Arrays.fill(keys, null);
+        }
+        entries = 0;
+        size = 0;
+    }
+
+    private static int indexOf(Object o, Object[] tab) {
+        int mask = tab.length - 1;
+        int i = hash(o) & mask;
+        Object k;
+        while ((k = tab[i]) != null && k != o) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(Object o) {
+        int h = System.identityHashCode(o);
+        // identityHashCode 低位分布较差，混合高位
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        int cap = oldKeys.length << 1;
+        keys = new Object[cap];
+        values = new int[cap];
+        threshold = (int) (cap * LOAD_FACTOR);
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object k = oldKeys[j];
+            if (k != null) {
+                int i = indexOf(k, keys);
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
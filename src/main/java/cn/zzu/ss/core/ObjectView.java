@@ -0,0 +1,289 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.Bits;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static cn.zzu.ss.core.Constants.*;
+
+/**
+ * 直接在序列化数据上读取对象字段的只读视图，不创建对象，也不解码用不到的字段。
+ * 数据须由 {@link Serializer#setIndexed(boolean) setIndexed(true)} 的 {@link Serializer} 写出，且不是紧凑格式、
+ * 不使用会话字典，视图的对象为对象流中的第一个对象。
+ * <p>
+ * 基本类型字段在每层定长的基本类型块中有固定的偏移，按字段名预先算好，随类缓存；
+ * 字符串等引用字段经由该层的偏移表定位。字段值引用了先出现的字符串时，退化为完整反序列化一次。
+ * 视图不是线程安全的，读取期间 data 不可修改。
+ *
+ * @see Serializer#setIndexed(boolean)
+ * @since 1.8
+ */
+public final class ObjectView {
+    /*
+     * 类名到类的缓存，避免每次建立视图都经过 Class.forName
+     */
+    private static final LightCache<String, Class<?>> CLASSES = new LightCache<>(1024);
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(ClassDescriptor.resolve(type));
+        }
+    };
+
+    private final byte[] data;
+    private final int off;
+    private final int len;
+    private final Bytes in;
+    private final Class<?> type;
+    private final Layout layout;
+    /* 各层基本类型块的起始位置，尚未定位的层为 -1 */
+    private final int[] levels;
+    /* 需要退化时完整反序列化得到的对象 */
+    private Object decoded;
+
+    private ObjectView(byte[] data, int off, int len) throws IOException {
+        this.data = data;
+        this.off = off;
+        this.len = len;
+        this.in = Bytes.newBytes().reuse(data, off, len);
+        switch (in.readByte()) {
+            case FC_INDEXED:
+                break;
+            case FC_COMPACT:
+                throw new DeserializeException("fields of a compact stream have no fixed offsets");
+            default:
+                throw new DeserializeException("stream is not indexed, see Serializer#setIndexed");
+        }
+        byte f = in.readByte();
+        if (f == FC_SESSION) {
+            throw new DeserializeException("views don't support session dictionaries");
+        }
+        if (f != FC_CLASS || in.readLen() != 0) {
+            throw new DeserializeException("stream doesn't start with a plain object");
+        }
+        this.type = classOf(in.readString());
+        this.layout = LAYOUTS.get(type);
+        if (in.readByte() != FC_OBJECT) {
+            throw new DeserializeException("unexpected type flag");
+        }
+        this.levels = new int[layout.reflectors.length];
+        Arrays.fill(levels, -1);
+        in.readLen();
+        levels[0] = in.position();
+    }
+
+    public static ObjectView of(byte[] data) {
+        return of(data, 0, data.length);
+    }
+
+    /**
+     * 以 data[off, off + len) 中的对象流建立视图，数据不会被拷贝
+     */
+    public static ObjectView of(byte[] data, int off, int len) {
+        try {
+            return new ObjectView(data, off, len);
+        } catch (IOException e) {
+            throw new DeserializeException(e);
+        }
+    }
+
+    /**
+     * 对象的实际类型
+     */
+    public Class<?> type() {
+        return type;
+    }
+
+    public boolean getBoolean(String name) {
+        return Bits.getBoolean(data, primitive(name, 'z'));
+    }
+
+    public byte getByte(String name) {
+        return data[primitive(name, 'b')];
+    }
+
+    public char getChar(String name) {
+        return Bits.getChar(data, primitive(name, 'c'));
+    }
+
+    public short getShort(String name) {
+        return Bits.getShort(data, primitive(name, 's'));
+    }
+
+    public int getInt(String name) {
+        return Bits.getInt(data, primitive(name, 'i'));
+    }
+
+    public long getLong(String name) {
+        return Bits.getLong(data, primitive(name, 'j'));
+    }
+
+    public float getFloat(String name) {
+        return Bits.getFloat(data, primitive(name, 'f'));
+    }
+
+    public double getDouble(String name) {
+        return Bits.getDouble(data, primitive(name, 'd'));
+    }
+
+    /**
+     * 读取 String 类型的字段，只解码该字段的字节
+     */
+    public String getString(String name) {
+        Slot slot = slot(name);
+        if (slot.typeCode != 'L') {
+            throw new DeserializeException(String.format("field %s of %s is not a string", name, type.getName()));
+        }
+        int p = valueAt(slot);
+        switch (data[p]) {
+            case FC_NULL:
+                return null;
+            case FS_STRING:
+                in.skipBytes(p + 1 - in.position());
+                try {
+                    return in.readString();
+                } catch (IOException e) {
+                    throw new DeserializeException(e);
+                }
+            case FC_REFERENCE:
+                // 同一字符串先前已经写出，只剩句柄
+                return (String) slot.reflector.valueOf(decoded(), slot.refKey);
+            default:
+                throw new DeserializeException("unexpected type flag");
+        }
+    }
+
+    /**
+     * 引用类型的字段是否为 null，基本类型的字段总是返回 false
+     */
+    public boolean isNull(String name) {
+        Slot slot = slot(name);
+        return (slot.typeCode == 'L' || slot.typeCode == 'R') && data[valueAt(slot)] == FC_NULL;
+    }
+
+    /*------------------- private methods -----------------*/
+
+    private Slot slot(String name) {
+        Slot slot = layout.slots.get(name);
+        if (slot == null) {
+            throw new DeserializeException(String.format("%s has no field %s", type.getName(), name));
+        }
+        return slot;
+    }
+
+    /*
+     * 基本类型字段在 data 中的位置
+     */
+    private int primitive(String name, char typeCode) {
+        Slot slot = slot(name);
+        if (slot.typeCode != typeCode) {
+            throw new DeserializeException(String.format("field %s of %s is not of type %s", name, type.getName(),
+                    typeCode));
+        }
+        return level(slot.level) + slot.index;
+    }
+
+    /*
+     * 引用字段值的位置，跳过可能存在的长度前缀
+     */
+    private int valueAt(Slot slot) {
+        int table = level(slot.level) + slot.reflector.getPriLen();
+        int p = table + Bits.getInt(data, table + (slot.index << 2));
+        return data[p] == FC_SKIPPABLE ? p + 5 : p;
+    }
+
+    /*
+     * 第 n 层基本类型块的起始位置：上一层偏移表的最后一项指向 fc_super + fc_super_info + primitive_length
+     */
+    private int level(int n) {
+        int p = levels[n];
+        if (p >= 0) {
+            return p;
+        }
+        ClassDescriptor.FieldReflector upper = layout.reflectors[n - 1];
+        int table = level(n - 1) + upper.getPriLen();
+        int at = table + Bits.getInt(data, table + (upper.getRefKeys().length << 2));
+        if (data[at] != FC_SUPER || data[at + 1] != FC_SUPER_INFO) {
+            throw new DeserializeException("invalid data");
+        }
+        in.skipBytes(at + 2 - in.position());
+        in.readLen();
+        return levels[n] = in.position();
+    }
+
+    private Object decoded() {
+        if (decoded == null) {
+            decoded = new Deserializer(data, off, len).readObject();
+        }
+        return decoded;
+    }
+
+    private static Class<?> classOf(String name) {
+        try {
+            return CLASSES.getIfPresent(name, () -> Class.forName(name.replace('/', '.')));
+        } catch (ExecutionException e) {
+            throw new DeserializeException((Exception) e.getCause());
+        }
+    }
+
+    /*
+     * 一个类各层字段的位置，子类的字段遮蔽父类的同名字段
+     */
+    private static final class Layout {
+        /* 自子类向上，各个可序列化层的字段 */
+        final ClassDescriptor.FieldReflector[] reflectors;
+        final Map<String, Slot> slots = new HashMap<>();
+
+        Layout(ClassDescriptor descriptor) {
+            if (!descriptor.isSerializable()) {
+                throw new DeserializeException(String.format("%s is not serializable", descriptor.getType()));
+            }
+            int n = 0;
+            for (ClassDescriptor d = descriptor; d != null && d.isSerializable(); d = d.getFather()) {
+                n++;
+            }
+            reflectors = new ClassDescriptor.FieldReflector[n];
+            ClassDescriptor d = descriptor;
+            for (int level = 0; level < n; level++, d = d.getFather()) {
+                ClassDescriptor.FieldReflector reflector = d.getFieldReflector();
+                reflectors[level] = reflector;
+                int[] priKeys = reflector.getPriKeys();
+                int[] priSize = reflector.getPriSize();
+                for (int i = 0, pos = 0; i < priKeys.length; pos += priSize[i++]) {
+                    FieldDescriptor fd = reflector.getFieldDescriptor(priKeys[i]);
+                    slots.putIfAbsent(fd.getName(), new Slot(reflector, level, fd.getTypeCode(), pos, priKeys[i]));
+                }
+                int[] refKeys = reflector.getRefKeys();
+                for (int i = 0; i < refKeys.length; i++) {
+                    FieldDescriptor fd = reflector.getFieldDescriptor(refKeys[i]);
+                    char tc = fd.getType() == String.class ? 'L' : 'R';
+                    slots.putIfAbsent(fd.getName(), new Slot(reflector, level, tc, i, refKeys[i]));
+                }
+            }
+        }
+    }
+
+    /*
+     * typeCode 为基本类型的类型码，'L' 表示字符串字段，'R' 表示其它引用字段；
+     * index 为基本类型字段在块中的偏移，或引用字段在偏移表中的下标
+     */
+    private static final class Slot {
+        final ClassDescriptor.FieldReflector reflector;
+        final int level;
+        final char typeCode;
+        final int index;
+        final int refKey;
+
+        Slot(ClassDescriptor.FieldReflector reflector, int level, char typeCode, int index, int refKey) {
+            this.reflector = reflector;
+            this.level = level;
+            this.typeCode = typeCode;
+            this.index = index;
+            this.refKey = refKey;
+        }
+    }
+}
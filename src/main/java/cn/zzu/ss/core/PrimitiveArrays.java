@@ -0,0 +1,108 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.UnsafeUtil;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+
+import static cn.zzu.ss.core.Constants.FC_BIG_ENDIAN;
+import static cn.zzu.ss.core.Constants.FC_LITTLE_ENDIAN;
+
+/**
+ * 基本类型数组的整块拷贝。
+ * <p>
+ * 数组与字节缓冲区之间用 Unsafe.copyMemory 直接拷贝内存，需要转换字节序时逐个元素翻转，
+ * 不经过 Array.get/Array.set，也没有装箱。
+ *
+ * @see SerialSink#writeArray(Object)
+ * @see SerialSource#readArray(Object, boolean)
+ * @since 1.8
+ */
+final class PrimitiveArrays {
+    private static final Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+    static final boolean BIG_ENDIAN_HOST = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+    /* 本机字节序对应的标志 */
+    static final byte NATIVE_ORDER = BIG_ENDIAN_HOST ? FC_BIG_ENDIAN : FC_LITTLE_ENDIAN;
+    static final long BYTE_BASE = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+    /* 经由 byte[] 中转时每次拷贝的字节数，是 8 的倍数 */
+    static final int CHUNK_SIZE = 8192;
+
+    /* 单次 copyMemory 的上限，避免长时间不进入安全点，与 java.nio.Bits 一致 */
+    private static final long COPY_THRESHOLD = 1024L * 1024L;
+
+    private PrimitiveArrays() {
+    }
+
+    /**
+     * 数组第一个元素相对数组对象的偏移量
+     */
+    static long base(Object array) {
+        return UNSAFE.arrayBaseOffset(array.getClass());
+    }
+
+    /**
+     * 数组每个元素占用的字节数
+     */
+    static int scale(Object array) {
+        return UNSAFE.arrayIndexScale(array.getClass());
+    }
+
+    /**
+     * 数组全部元素占用的字节数
+     */
+    static long byteLength(Object array) {
+        return (long) Array.getLength(array) * scale(array);
+    }
+
+    /**
+     * 读取字节序标志
+     *
+     * @return 数据的字节序与本机不同时返回 true
+     */
+    static boolean swapOf(byte order) {
+        if (order != FC_BIG_ENDIAN && order != FC_LITTLE_ENDIAN) {
+            throw new DeserializeException(String.format("invalid byte order flag %d", order));
+        }
+        return order != NATIVE_ORDER;
+    }
+
+    /**
+     * 拷贝 bytes 个字节。src/dst 为 null 时对应的偏移量是绝对内存地址。
+     *
+     * @param scale 元素大小，swap 为 true 时按该大小翻转每个元素的字节序
+     */
+    static void copy(Object src, long srcOffset, Object dst, long dstOffset, long bytes, int scale, boolean swap) {
+        if (!swap || scale == 1) {
+            while (bytes > 0) {
+                long n = Math.min(bytes, COPY_THRESHOLD);
+                UNSAFE.copyMemory(src, srcOffset, dst, dstOffset, n);
+                bytes -= n;
+                srcOffset += n;
+                dstOffset += n;
+            }
+            return;
+        }
+        long end = srcOffset + bytes;
+        switch (scale) {
+            case 2:
+                for (; srcOffset < end; srcOffset += 2, dstOffset += 2) {
+                    UNSAFE.putShort(dst, dstOffset, Short.reverseBytes(UNSAFE.getShort(src, srcOffset)));
+                }
+                break;
+            case 4:
+                for (; srcOffset < end; srcOffset += 4, dstOffset += 4) {
+                    UNSAFE.putInt(dst, dstOffset, Integer.reverseBytes(UNSAFE.getInt(src, srcOffset)));
+                }
+                break;
+            case 8:
+                for (; srcOffset < end; srcOffset += 8, dstOffset += 8) {
+                    UNSAFE.putLong(dst, dstOffset, Long.reverseBytes(UNSAFE.getLong(src, srcOffset)));
+                }
+                break;
+            default:
+                throw new InternalError();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cn.zzu.ss.core;
+
+import java.io.IOException;
+
+/**
+ * 序列化数据的输出目标。{@link Serializer} 只通过该接口写出数据，
+ * 因而可以直接写入 {@link Bytes} 以外的缓冲区（例如 netty 的 ByteBuf），省去中间拷贝。
+ * <p>
+ * 所有多字节数值均为大端序，与 {@link cn.zzu.ss.util.Bits} 一致。
+ *
+ * @see Bytes
+ * @since 1.8
+ */
+public interface SerialSink {
+
+    void writeBoolean(boolean v);
+
+    void writeByte(byte v);
+
+    void writeShort(int v);
+
+    void writeChar(int v);
+
+    void writeInt(int v);
+
+    void writeLong(long v);
+
+    void writeFloat(float v);
+
+    void writeDouble(double v);
+
+    /**
+     * 原样写入 b[off, off + len)，不带长度前缀
+     */
+    void write(byte[] b, int off, int len);
+
+    /**
+     * 已写入的字节数，即下一个字节的写入位置，用于之后以 {@link #setInt(int, int)} 回填。
+     * 不支持回填的实现（例如边写边输出的流）返回 -1
+     */
+    default int writerIndex() {
+        return -1;
+    }
+
+    /**
+     * 在 index 处回填一个 int，写入位置不变
+     *
+     * @see #writerIndex()
+     */
+    default void setInt(int index, int v) {
+        throw new UnsupportedOperationException("back-patching is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 写入变长的长度前缀，每字节 7 位，最高位为 1 表示后面还有字节，最多 4 字节
+     */
+    default void writeLen(int len) {
+        if (len < 0) throw new NegativeArraySizeException();
+        if (len > 0x1FFFFF) {
+            writeByte((byte) ((len >>> 21) | 0x80));
+        }
+        if (len > 0x3FFF) {
+            writeByte((byte) ((len >>> 14) | 0x80));
+        }
+        if (len > 0x7F) {
+            writeByte((byte) ((len >>> 7) | 0x80));
+        }
+        writeByte((byte) (len & 0x7F));
+    }
+
+    /**
+     * 写入 zigzag 编码的变长 int，每字节 7 位，低位在前，最高位为 1 表示后面还有字节。
+     * 绝对值小的数（包括负数）只占 1 字节，最多 5 字节
+     */
+    default void writeVarInt(int v) {
+        int n = (v << 1) ^ (v >> 31);
+        while ((n & ~0x7F) != 0) {
+            writeByte((byte) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        writeByte((byte) n);
+    }
+
+    /**
+     * 写入 zigzag 编码的变长 long，格式同 {@link #writeVarInt(int)}，最多 10 字节
+     */
+    default void writeVarLong(long v) {
+        long n = (v << 1) ^ (v >> 63);
+        while ((n & ~0x7FL) != 0) {
+            writeByte((byte) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        writeByte((byte) n);
+    }
+
+    /**
+     * 写入一个带长度前缀的 UTF-8 字符串，逐字节编码，不产生中间 byte[]
+     */
+    default void writeString(String s) throws IOException {
+        writeLen(Utf8.length(s));
+        Utf8.encode(s, this);
+    }
+
+    /**
+     * 写入一个带长度前缀的字节数组
+     */
+    default void writeBytes(byte[] bytes) {
+        writeLen(bytes.length);
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 整块写入基本类型数组 array 的全部元素，按本机字节序，不带长度前缀。
+     * 默认经由一个小的 byte[] 分段中转，能直接访问内存的实现应覆盖该方法。
+     */
+    default void writeArray(Object array) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        long base = PrimitiveArrays.base(array);
+        byte[] chunk = new byte[(int) Math.min(bytes, PrimitiveArrays.CHUNK_SIZE)];
+        for (long done = 0; done < bytes; ) {
+            int n = (int) Math.min(chunk.length, bytes - done);
+            PrimitiveArrays.copy(array, base + done, chunk, PrimitiveArrays.BYTE_BASE, n, 1, false);
+            write(chunk, 0, n);
+            done += n;
+        }
+    }
+}
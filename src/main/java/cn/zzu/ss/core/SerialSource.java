@@ -0,0 +1,166 @@
+package cn.zzu.ss.core;
+
+import java.io.IOException;
+
+/**
+ * 序列化数据的输入来源。{@link Deserializer} 只通过该接口读取数据，
+ * 因而可以直接从 {@link Bytes} 以外的缓冲区（例如 netty 的 ByteBuf）解码，无需先拷贝成 byte[]。
+ * <p>
+ * 所有多字节数值均为大端序，格式与 {@link SerialSink} 对应。
+ *
+ * @see Bytes
+ * @see SerialSink
+ * @since 1.8
+ */
+public interface SerialSource {
+
+    /**
+     * 返回可读的字节数
+     */
+    int readable();
+
+    byte peekByte();
+
+    short peekShort();
+
+    /**
+     * 跳过 n 个字节，n 可以为负数以回退
+     *
+     * @return 跳过之后的位置
+     */
+    int skipBytes(int n);
+
+    boolean readBoolean();
+
+    byte readByte();
+
+    short readShort();
+
+    char readChar();
+
+    int readInt();
+
+    long readLong();
+
+    float readFloat();
+
+    double readDouble();
+
+    /**
+     * 读一个带长度前缀的 UTF-8 字符串
+     */
+    String readString() throws IOException;
+
+    /**
+     * 预读一个带长度前缀的 UTF-8 字符串，读取位置不变
+     */
+    String peekString() throws IOException;
+
+    /**
+     * 读一个带长度前缀的字节数组
+     */
+    byte[] readBytes();
+
+    /**
+     * 原样读取 len 个字节到 b[off, off + len)
+     */
+    void read(byte[] b, int off, int len);
+
+    /**
+     * 能否通过 {@link #seek(long)} 回到之前读过的任意位置。{@link Deserializer} 投影读取时据此决定能否整体跳过不需要的值，
+     * 等到被引用时再回头解码；不能回退的来源（例如流式读取）照常解码后丢弃不需要的值
+     */
+    default boolean seekable() {
+        return false;
+    }
+
+    /**
+     * 当前的读取位置，超过 2GB 的来源同样准确，只有 {@link #seekable()} 的来源支持
+     */
+    default long offset() {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot seek");
+    }
+
+    /**
+     * 回到 {@link #offset()} 返回过的位置，只有 {@link #seekable()} 的来源支持
+     */
+    default void seek(long offset) {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot seek");
+    }
+
+    /**
+     * 返回从当前位置起 length 字节的视图，并跳过这些字节。视图有自己的读取位置，与本来源及其它视图互不影响，
+     * 可以在其它线程中读取，{@link Deserializer} 据此并行解码分段而不拷贝分段的数据。
+     * 默认返回 null，表示不能提供视图，分段的数据先读入堆上的数组。
+     */
+    default SerialSource slice(int length) {
+        return null;
+    }
+
+    /**
+     * 读取 {@link SerialSink#writeArray(Object)} 写入的元素，填满基本类型数组 array。
+     * 默认经由一个小的 byte[] 分段中转，能直接访问内存的实现应覆盖该方法。
+     *
+     * @param swap 数据的字节序与本机不同时为 true
+     */
+    default void readArray(Object array, boolean swap) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        long base = PrimitiveArrays.base(array);
+        int scale = PrimitiveArrays.scale(array);
+        byte[] chunk = new byte[(int) Math.min(bytes, PrimitiveArrays.CHUNK_SIZE)];
+        for (long done = 0; done < bytes; ) {
+            int n = (int) Math.min(chunk.length, bytes - done);
+            read(chunk, 0, n);
+            PrimitiveArrays.copy(chunk, PrimitiveArrays.BYTE_BASE, array, base + done, n, scale, swap);
+            done += n;
+        }
+    }
+
+    /**
+     * 读取 {@link SerialSink#writeLen(int)} 写入的变长长度前缀
+     */
+    default int readLen() {
+        int n = 0;
+        int p = 0;
+        byte cur;
+        do {
+            cur = readByte();
+            n = (n << 7) | (cur & 0x7F);
+        } while ((cur & 0x80) == 0x80 && ++p < 4);
+
+        if (n < 0) throw new NegativeArraySizeException();
+        return n;
+    }
+
+    /**
+     * 读取 {@link SerialSink#writeVarInt(int)} 写入的变长 int
+     */
+    default int readVarInt() {
+        int n = 0;
+        int shift = 0;
+        byte cur;
+        do {
+            if (shift > 28) throw new DeserializeException("malformed varint");
+            cur = readByte();
+            n |= (cur & 0x7F) << shift;
+            shift += 7;
+        } while (cur < 0);
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * 读取 {@link SerialSink#writeVarLong(long)} 写入的变长 long
+     */
+    default long readVarLong() {
+        long n = 0;
+        int shift = 0;
+        byte cur;
+        do {
+            if (shift > 63) throw new DeserializeException("malformed varint");
+            cur = readByte();
+            n |= (long) (cur & 0x7F) << shift;
+            shift += 7;
+        } while (cur < 0);
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -2,11 +2,16 @@ package cn.zzu.ss.core;
 
 import cn.zzu.ss.util.TypeUtil;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Array;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import static cn.zzu.ss.core.Constants.*;
 
@@ -14,14 +19,53 @@ import static cn.zzu.ss.core.Constants.*;
  * @since 1.8
  */
 public class Serializer {
+    /*
+     * 写入对象流的类名与数组元素签名，按类缓存，避免每次写出时重新拼接字符串
+     */
+    private static final ClassValue<String> CLASS_NAMES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getCanonicalName().replace('.', '/');
+        }
+    };
+    private static final ClassValue<String> SIGNATURES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return TypeUtil.getClassSignature(type);
+        }
+    };
 
-    private List<Object> handled;
+    private HandleTable handled;
+    /* 已写出的类，值为类 id */
+    private HandleTable classes;
     private int depth = 0;
     private Bytes bytes;
+    /* 实际的写出目标，默认为 bytes */
+    private SerialSink out;
+    /* 会话级共享字典，为 null 时不使用 */
+    private SessionDictionary session;
+    /* 当前对象流是否已写出流头 */
+    private boolean started;
+    /* 是否使用紧凑格式，在 reset() 之后依然有效 */
+    private boolean compact;
+    /* 是否为引用字段写出可跳过的长度前缀，在 reset() 之后依然有效 */
+    private boolean skippable;
+    /* 是否在每层基本类型字段之后写出引用字段的偏移表，在 reset() 之后依然有效 */
+    private boolean indexed;
+    /* 并行写出大集合与数组的线程池，为 null 时不分段，在 reset() 之后依然有效 */
+    private ForkJoinPool pool;
+    /* 每个分段的元素个数 */
+    private int segmentSize;
+    /* 分段写出时正在写出的对象、集合、映射与数组，即当前对象的各级外层，pool 为 null 时不记录 */
+    private ArrayList<Object> writing;
+    /* 外层 Serializer 中正在写出的对象，分段中的元素引用其中之一即构成跨越分段的环 */
+    private Set<Object> enclosing;
 
     public Serializer() {
-        handled = new ArrayList<>();
+        handled = new HandleTable();
+        classes = new HandleTable(16);
         bytes = Bytes.newBytes();
+        out = bytes;
     }
 
     /**
@@ -29,10 +73,13 @@ public class Serializer {
      * objects | -> super class name | primitive variables | reference objects | -> ... obj-end-flag
      */
     public void writeObject(Object obj) {
+        if (!started) {
+            write_header();
+        }
         int idx;
         if (obj == null) {
-            bytes.writeByte(FC_NULL);
-        } else if ((idx = handled.indexOf(obj)) != -1) {
+            out.writeByte(FC_NULL);
+        } else if ((idx = handled.lookup(obj)) != -1) {
             refer_to(idx);
         } else {
             Class<?> objCls = obj.getClass();
@@ -61,7 +108,7 @@ public class Serializer {
             }
         }
         if (depth == 0) {
-            reset();
+            write_reset();
         }
     }
 
@@ -78,36 +125,306 @@ public class Serializer {
      */
     public void flushTo(OutputStream os) throws IOException {
         handled.clear();
+        classes.clear();
+        started = false;
         byte[] data = bytes.compactData();
         os.write(data);
         os.flush();
         bytes.clear();
     }
 
+    /**
+     * 丢弃已写出的数据与句柄，使该实例可以序列化下一个对象流。缓冲区已增长的容量会被保留。
+     */
+    public void reset() {
+        handled.clear();
+        classes.clear();
+        bytes.discard();
+        out = bytes;
+        session = null;
+        started = false;
+        depth = 0;
+        if (writing != null) {
+            writing.clear();
+        }
+    }
+
+    /**
+     * 将之后的输出直接写入 sink，而不是内部缓冲区。在调用 {@link #reset()} 之前，
+     * {@link #getSerialData()} 与 {@link #flushTo(OutputStream)} 不包含写入 sink 的数据。
+     *
+     * @param sink 输出目标
+     */
+    public void redirect(SerialSink sink) {
+        out = Objects.requireNonNull(sink);
+    }
+
+    /**
+     * 流式写出：之后的输出经由大小固定的缓冲区写入 os，缓冲区写满即写出，内存占用与对象图的大小无关。
+     * 写完后须调用 {@link #flush()} 写出缓冲区中剩余的数据；{@link #reset()} 之后恢复写入内部缓冲区。
+     * 写出失败时 {@link #writeObject(Object)} 抛出 {@link SerializeException}。
+     *
+     * @param os         输出流
+     * @param bufferSize 缓冲区大小，至少 64 字节
+     */
+    public void streamTo(OutputStream os, int bufferSize) {
+        redirect(new StreamSink(os, bufferSize));
+    }
+
+    public void streamTo(OutputStream os) {
+        streamTo(os, StreamSink.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 同 {@link #streamTo(OutputStream, int)}，写入 channel
+     *
+     * @param channel    输出通道，须为阻塞模式
+     * @param bufferSize 缓冲区大小，至少 64 字节
+     */
+    public void streamTo(WritableByteChannel channel, int bufferSize) {
+        redirect(new StreamSink(channel, bufferSize));
+    }
+
+    public void streamTo(WritableByteChannel channel) {
+        streamTo(channel, StreamSink.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 流式写出时，写出缓冲区中剩余的数据并 flush 输出流；输出目标不是 {@link Flushable} 时什么也不做
+     *
+     * @throws IOException the flush exception
+     */
+    public void flush() throws IOException {
+        if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * 之后的对象流以 dictionary 中的 id 引用其中的类与字符串，直到调用 {@link #reset()}。
+     * 须在对象流的第一次 {@link #writeObject(Object)} 之前调用，读取方须持有相同的字典。
+     *
+     * @param dictionary 会话级共享字典
+     */
+    public void share(SessionDictionary dictionary) {
+        if (started) {
+            throw new SerializeException("session dictionary must be shared before the stream starts");
+        }
+        session = Objects.requireNonNull(dictionary);
+    }
+
+    /**
+     * 使用紧凑格式：short、char、int、long 字段与各种长度写为 zigzag 变长整数，装箱类型只用一个字节的标签。
+     * 对象流以 FC_COMPACT 开头，{@link Deserializer} 据此自动识别，无需另行设置。
+     * 须在对象流的第一次 {@link #writeObject(Object)} 之前调用。
+     *
+     * @param compact 是否使用紧凑格式，默认为 false
+     */
+    public void setCompact(boolean compact) {
+        if (started) {
+            throw new SerializeException("wire profile must be chosen before the stream starts");
+        }
+        this.compact = compact;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * 为对象、集合、map 与数组类型的字段值写出长度前缀，读取方投影时可以按长度整体跳过不需要的字段，
+     * 见 {@link Deserializer#readObject(Class, String...)}。输出目标须支持回填，即 {@link SerialSink#writerIndex()}
+     * 不为 -1，流式写出时不可用。须在对象流的第一次 {@link #writeObject(Object)} 之前调用。
+     *
+     * @param skippable 是否写出长度前缀，默认为 false
+     */
+    public void setSkippable(boolean skippable) {
+        if (started) {
+            throw new SerializeException("wire profile must be chosen before the stream starts");
+        }
+        this.skippable = skippable;
+    }
+
+    public boolean isSkippable() {
+        return skippable;
+    }
+
+    /**
+     * 在对象每一层的基本类型字段之后写出引用字段的偏移表，{@link ObjectView} 据此直接从序列化数据中读取字段，
+     * 不必反序列化整个对象。对象流以 FC_INDEXED 开头，{@link Deserializer} 读取时跳过偏移表。
+     * 输出目标须支持回填，流式写出时不可用。须在对象流的第一次 {@link #writeObject(Object)} 之前调用。
+     *
+     * @param indexed 是否写出偏移表，默认为 false
+     */
+    public void setIndexed(boolean indexed) {
+        if (started) {
+            throw new SerializeException("wire profile must be chosen before the stream starts");
+        }
+        this.indexed = indexed;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * 元素多于 segmentSize 的集合与引用类型数组按 segmentSize 个元素一段，在 pool 中并行写出，
+     * 再连同分段目录按顺序拼接。各分段使用独立的句柄表：分段中的元素只能引用同一分段中的对象，
+     * 与分段外的对象（包括其它分段）不共享引用，重复出现时各写一份；共享字典中的类与字符串在各分段中均可引用。
+     * 基本类型数组整块拷贝，不分段。分段中的元素引用外层正在写出的对象（经过分段容器的环）时，
+     * 因其无法跨分段引用而抛出 {@link SerializeException}。须在对象流的第一次 {@link #writeObject(Object)} 之前调用。
+     *
+     * @param pool        写出分段的线程池，为 null 时不分段
+     * @param segmentSize 每个分段的元素个数
+     */
+    public void setParallel(ForkJoinPool pool, int segmentSize) {
+        if (started) {
+            throw new SerializeException("wire profile must be chosen before the stream starts");
+        }
+        if (pool != null && segmentSize < 1) {
+            throw new IllegalArgumentException("segment size must be positive: " + segmentSize);
+        }
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+        this.writing = pool == null ? null : new ArrayList<>();
+    }
+
     /*-----------------------private methods-------------------------------*/
-    private void reset() {
-        bytes.writeByte(FC_RESET);
+    /*
+     * [fc_compact] + [fc_indexed] + [fc_session + fingerprint]
+     */
+    private void write_header() {
+        started = true;
+        if (compact) {
+            out.writeByte(FC_COMPACT);
+        }
+        if (indexed) {
+            out.writeByte(FC_INDEXED);
+        }
+        if (session != null) {
+            out.writeByte(FC_SESSION);
+            out.writeInt(session.fingerprint());
+        }
+    }
+
+    private void write_reset() {
+        out.writeByte(FC_RESET);
     }
 
     private void refer_to(int idx) {
-        bytes.writeByte(FC_REFERENCE);
-        bytes.writeInt(idx);
+        out.writeByte(FC_REFERENCE);
+        write_length(idx);
+    }
+
+    /*
+     * 句柄下标与数组、集合、map 的长度
+     */
+    private void write_length(int len) {
+        if (compact) {
+            out.writeVarInt(len);
+        } else {
+            out.writeInt(len);
+        }
+    }
+
+    private void write_primitives(ClassDescriptor.FieldReflector fieldReflector, Object obj) {
+        if (compact) {
+            fieldReflector.writeCompactPrimitives(obj, out);
+        } else {
+            fieldReflector.writePrimitives(obj, out);
+        }
+    }
+
+    /*
+     * fc_skippable + value_length + value + handle_count + class_count
+     * 字符串、枚举、装箱类型与类本身很短，不写长度前缀；返回待回填的长度的位置，不写前缀时返回 -1
+     */
+    private int begin_skippable(Object o) {
+        if (!skippable || o instanceof String || o instanceof Enum || o instanceof Class
+                || TypeUtil.isRefPrimitive(o.getClass())) {
+            return -1;
+        }
+        out.writeByte(FC_SKIPPABLE);
+        int lenAt = out.writerIndex();
+        if (lenAt < 0) {
+            throw new SerializeException("skippable fields need a sink that supports back-patching");
+        }
+        out.writeInt(0);
+        return lenAt;
+    }
+
+    private void end_skippable(int lenAt, int handles0, int classes0) {
+        if (lenAt < 0) {
+            return;
+        }
+        out.setInt(lenAt, out.writerIndex() - lenAt - 4);
+        out.writeVarInt(handled.size() - handles0);
+        out.writeVarInt(classes.size() - classes0);
+    }
+
+    /*
+     * offset_table: 每个引用字段值的偏移 + fc_super 的偏移，均相对于表的起始位置，写完对应的值后回填。
+     * 返回表的起始位置，不写偏移表时返回 -1
+     */
+    private int begin_index(int refCount) {
+        if (!indexed) {
+            return -1;
+        }
+        int tableAt = out.writerIndex();
+        if (tableAt < 0) {
+            throw new SerializeException("indexed objects need a sink that supports back-patching");
+        }
+        for (int i = 0; i <= refCount; i++) {
+            out.writeInt(0);
+        }
+        return tableAt;
+    }
+
+    private void index_entry(int tableAt, int i) {
+        if (tableAt >= 0) {
+            out.setInt(tableAt + (i << 2), out.writerIndex() - tableAt);
+        }
     }
 
     private void write_classname(Class<?> cl, boolean clFlag) throws IOException {
         if (clFlag) {
-            bytes.writeByte(FC_CLASS);
+            out.writeByte(FC_CLASS);
+        }
+        // 类名首次出现时写出 0 + 完整名称并分配 id，之后只写 id + 1；共享字典中的类占用最前面的 id
+        int shared = session == null ? 0 : session.classCount();
+        int id = session == null ? -1 : session.classId(cl);
+        if (id < 0 && (id = classes.lookup(cl)) >= 0) {
+            id += shared;
+        }
+        if (id >= 0) {
+            write_class_id(id + 1);
+        } else {
+            classes.assign(cl);
+            out.writeLen(0);
+            out.writeString(CLASS_NAMES.get(cl));
+        }
+    }
+
+    /*
+     * 集合与映射的读取方先预读一个字节判断是否为标志，不是标志时才读类名。
+     * 与标志字节同值的 id 在前面补一个空的高位组 0x80，读出的长度不变，类名的首字节不会落在标志的取值范围内
+     */
+    private void write_class_id(int v) {
+        if (v >= FC_NULL && v <= 0x7F) {
+            out.writeByte((byte) 0x80);
+            out.writeByte((byte) v);
+        } else {
+            out.writeLen(v);
         }
-        bytes.writeString(cl.getCanonicalName().replace('.', '/'));
     }
 
     /*
      * fs_enum + class_name + enum_string
      */
     private void write_enum(final Enum o) throws IOException {
-        bytes.writeByte(FS_ENUM);
+        out.writeByte(FS_ENUM);
         write_classname(((Enum) o).getClass(), false);
-        bytes.writeString((((Enum) o)).name());
+        out.writeString((((Enum) o)).name());
     }
 
     /*
@@ -130,134 +447,95 @@ public class Serializer {
      * @see #write_object(Object, ClassDescriptor, boolean, boolean)
      */
     private void write_array(final Object o) throws IOException {
-        handled.add(o);
-        bytes.writeByte(FS_ARRAY);
+        handled.assign(o);
+        enter(o);
         Class<?> eleType = o.getClass().getComponentType();
         int len = Array.getLength(o);
-        bytes.writeString(TypeUtil.getClassSignature(eleType));
-        bytes.writeInt(len);
+        if (segmented(len) && !eleType.isPrimitive() && !eleType.isArray()) {
+            // 基本类型数组整块拷贝，不必分段
+            write_segmented(FS_ARRAY, eleType, (Object[]) o);
+            leave();
+            return;
+        }
+        out.writeByte(FS_ARRAY);
+        out.writeString(SIGNATURES.get(eleType));
+        write_length(len);
 
         if (eleType.isPrimitive()) {
-            if (eleType == Integer.TYPE) {
-                // int array
-                for (int i = 0; i < len; i++) {
-                    int x = (int) Array.get(o, i);
-                    bytes.writeInt(x);
-                }
-            } else if (eleType == Byte.TYPE) {
-                // byte array
-                for (int i = 0; i < len; i++) {
-                    byte x = (byte) Array.get(o, i);
-                    bytes.writeByte(x);
-                }
-            } else if (eleType == Long.TYPE) {
-                // long array
-                for (int i = 0; i < len; i++) {
-                    long x = (long) Array.get(o, i);
-                    bytes.writeLong(x);
-                }
-            } else if (eleType == Float.TYPE) {
-                // float array
-                for (int i = 0; i < len; i++) {
-                    float x = (float) Array.get(o, i);
-                    bytes.writeFloat(x);
-                }
-            } else if (eleType == Double.TYPE) {
-                // double array
-                for (int i = 0; i < len; i++) {
-                    double x = (double) Array.get(o, i);
-                    bytes.writeDouble(x);
-                }
-            } else if (eleType == Short.TYPE) {
-                // short array
-                for (int i = 0; i < len; i++) {
-                    short x = (short) Array.get(o, i);
-                    bytes.writeShort(x);
-                }
-            } else if (eleType == Character.TYPE) {
-                // char array
-                for (int i = 0; i < len; i++) {
-                    char x = (char) Array.get(o, i);
-                    bytes.writeChar(x);
-                }
-            } else if (eleType == Boolean.TYPE) {
-                // boolean array
-                for (int i = 0; i < len; i++) {
-                    boolean x = (boolean) Array.get(o, i);
-                    bytes.writeBoolean(x);
-                }
-            } else {
-                throw new InternalError();
+            // 基本类型数组整块拷贝，多字节元素按本机字节序写出并在前面声明字节序
+            if (eleType != Boolean.TYPE && eleType != Byte.TYPE) {
+                out.writeByte(PrimitiveArrays.NATIVE_ORDER);
             }
+            out.writeArray(o);
         } else if (TypeUtil.isRefPrimitive(eleType)) {
             if (eleType == Integer.class) {
                 // Integer array
                 for (int i = 0; i < len; i++) {
                     Integer x = (Integer) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeInt(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeInt(x);
                     }
                 }
             } else if (eleType == Byte.class) {
                 // Byte array
                 for (int i = 0; i < len; i++) {
                     Byte x = (Byte) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeByte(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeByte(x);
                     }
                 }
             } else if (eleType == Long.class) {
                 // Long array
                 for (int i = 0; i < len; i++) {
                     Long x = (Long) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeLong(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeLong(x);
                     }
                 }
             } else if (eleType == Float.class) {
                 // Float array
                 for (int i = 0; i < len; i++) {
                     Float x = (Float) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeFloat(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeFloat(x);
                     }
                 }
             } else if (eleType == Double.class) {
                 // Double array
                 for (int i = 0; i < len; i++) {
                     Double x = (Double) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeDouble(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeDouble(x);
                     }
                 }
             } else if (eleType == Short.class) {
                 // Short array
                 for (int i = 0; i < len; i++) {
                     Short x = (Short) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeShort(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeShort(x);
                     }
                 }
             } else if (eleType == Character.class) {
                 // Character array
                 for (int i = 0; i < len; i++) {
                     Character x = (Character) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeChar(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeChar(x);
                     }
 
                 }
@@ -265,10 +543,10 @@ public class Serializer {
                 // Boolean array
                 for (int i = 0; i < len; i++) {
                     Boolean x = (Boolean) Array.get(o, i);
-                    if (x == null) bytes.writeByte(FC_NULL);
+                    if (x == null) out.writeByte(FC_NULL);
                     else {
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeBoolean(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeBoolean(x);
                     }
                 }
             } else {
@@ -278,15 +556,15 @@ public class Serializer {
             // String array
             for (int i = 0; i < len; i++) {
                 String x = ((String) Array.get(o, i));
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
-                    if (idx > 0) {
+                    int idx = handled.lookup(x);
+                    if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        handled.add(x);
-                        bytes.writeByte(FC_NON_NULL);
-                        bytes.writeString(x);
+                        handled.assign(x);
+                        out.writeByte(FC_NON_NULL);
+                        out.writeString(x);
                     }
                 }
             }
@@ -294,13 +572,13 @@ public class Serializer {
             // Array array
             for (int i = 0; i < len; i++) {
                 Object x = Array.get(o, i);
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
-                    if (idx > 0) {
+                    int idx = handled.lookup(x);
+                    if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        bytes.writeByte(FC_NON_NULL);
+                        out.writeByte(FC_NON_NULL);
                         write_array(x);
                     }
                 }
@@ -309,13 +587,13 @@ public class Serializer {
             // Collection array
             for (int i = 0; i < len; i++) {
                 Collection x = (Collection) Array.get(o, i);
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
-                    if (idx > 0) {
+                    int idx = handled.lookup(x);
+                    if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        bytes.writeByte(FC_NON_NULL);
+                        out.writeByte(FC_NON_NULL);
                         write_collection(x);
                     }
                 }
@@ -324,13 +602,13 @@ public class Serializer {
             // Enum array
             for (int i = 0; i < len; i++) {
                 Enum x = (Enum) Array.get(o, i);
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
-                    if (idx > 0) {
+                    int idx = handled.lookup(x);
+                    if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        bytes.writeByte(FC_NON_NULL);
+                        out.writeByte(FC_NON_NULL);
                         write_enum(x);
                     }
                 }
@@ -339,13 +617,13 @@ public class Serializer {
             // Map array
             for (int i = 0; i < len; i++) {
                 Map x = (Map) Array.get(o, i);
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
-                    if (idx > 0) {
+                    int idx = handled.lookup(x);
+                    if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        bytes.writeByte(FC_NON_NULL);
+                        out.writeByte(FC_NON_NULL);
                         write_map(x);
                     }
                 }
@@ -354,13 +632,13 @@ public class Serializer {
             // Class array
             for (int i = 0; i < len; i++) {
                 Class x = (Class) Array.get(o, i);
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
-                    if (idx > 0) {
+                    int idx = handled.lookup(x);
+                    if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        bytes.writeByte(FC_NON_NULL);
+                        out.writeByte(FC_NON_NULL);
                         write_class(x, true);
                     }
                 }
@@ -369,21 +647,20 @@ public class Serializer {
             // Object array
             for (int i = 0; i < len; i++) {
                 Object x = Array.get(o, i);
-                if (x == null) bytes.writeByte(FC_NULL);
+                if (x == null) out.writeByte(FC_NULL);
                 else {
-                    int idx = handled.indexOf(x);
+                    int idx = handled.lookup(x);
                     if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        handled.add(x);
-                        bytes.writeByte(FC_NON_NULL);
+                        out.writeByte(FC_NON_NULL);
                         Class xCl = x.getClass();
                         write_object(x, ClassDescriptor.resolve(xCl), true, true);
                     }
                 }
             }
         }
-
+        leave();
     }
 
     /*
@@ -402,11 +679,12 @@ public class Serializer {
      *
      **/
     private void write_map(final Map obj) throws IOException {
-        handled.add(obj);
-        bytes.writeByte(FS_MAP);
+        handled.assign(obj);
+        enter(obj);
+        out.writeByte(FS_MAP);
 
         write_classname(obj.getClass(), false);
-        bytes.writeInt(obj.size());
+        write_length(obj.size());
         Class<?> lastKeyClass = null;
         Class<?> lastValClass = null;
         Set entries = obj.entrySet();
@@ -417,19 +695,19 @@ public class Serializer {
             int idx;
 
             if (key == null) {
-                bytes.writeByte(FC_NULL);
+                out.writeByte(FC_NULL);
             } else {
 
                 Class kCl = key.getClass();
 
-                idx = handled.indexOf(key);
+                idx = handled.lookup(key);
 
                 if (idx >= 0) {
                     refer_to(idx);
                 } else {
                     boolean eql = lastKeyClass == kCl;
                     if (eql) {
-                        bytes.writeByte(FC_LAST_KEY_TYPE);
+                        out.writeByte(FC_LAST_KEY_TYPE);
                     } else {
                         lastKeyClass = kCl;
                     }
@@ -438,16 +716,16 @@ public class Serializer {
             }
 
             if (val == null) {
-                bytes.writeByte(FC_NULL);
+                out.writeByte(FC_NULL);
             } else {
                 Class vCl = val.getClass();
-                idx = handled.indexOf(val);
+                idx = handled.lookup(val);
                 if (idx >= 0) {
                     refer_to(idx);
                 } else {
                     boolean eql = lastValClass == vCl;
                     if (eql) {
-                        bytes.writeByte(FC_LAST_VALUE_TYPE);
+                        out.writeByte(FC_LAST_VALUE_TYPE);
                     } else {
                         lastValClass = vCl;
                     }
@@ -455,6 +733,7 @@ public class Serializer {
                 }
             }
         }
+        leave();
     }
 
     /*
@@ -466,25 +745,38 @@ public class Serializer {
      * @see #write_object(Object, ClassDescriptor, boolean, boolean)
      **/
     private void write_collection(final Collection obj) throws IOException {
-        handled.add(obj);
-        bytes.writeByte(FS_COLLECTION);
-        write_classname(obj.getClass(), false);
-        bytes.writeInt(obj.size());
+        handled.assign(obj);
+        enter(obj);
+        if (segmented(obj.size())) {
+            write_segmented(FS_COLLECTION, obj.getClass(), obj.toArray());
+        } else {
+            out.writeByte(FS_COLLECTION);
+            write_classname(obj.getClass(), false);
+            write_length(obj.size());
+            write_elements(obj);
+        }
+        leave();
+    }
+
+    /*
+     * 集合的元素，见 write_collection
+     */
+    private void write_elements(final Iterable<?> elements) throws IOException {
         Class<?> lastEleType = null;
-        for (Object o : obj) {
+        for (Object o : elements) {
             if (o == null) {
-                bytes.writeByte(FC_NULL);
+                out.writeByte(FC_NULL);
                 continue;
             }
 
             Class<?> ocl = o.getClass();
-            int idx = handled.indexOf(o);
+            int idx = handled.lookup(o);
             if (idx >= 0) {
                 refer_to(idx);
             } else {
                 boolean eql = lastEleType == ocl;
                 if (eql) {
-                    bytes.writeByte(FC_LAST_ELE_TYPE);
+                    out.writeByte(FC_LAST_ELE_TYPE);
                 } else {
                     lastEleType = ocl;
                 }
@@ -493,41 +785,171 @@ public class Serializer {
         }
     }
 
+    private boolean segmented(int size) {
+        return pool != null && size > segmentSize;
+    }
+
+    /*
+     * fs_segmented + [fs_collection | fs_array] + class_name + size + segment_count + loop[element_count + byte_length]
+     * + loop[segment]
+     * 集合的类名或数组的元素类名之后是分段目录，各分段的格式同 write_elements，使用各自的句柄表与类表，
+     * 在 pool 中并行写出后按顺序拼接。分段中的元素只能引用同一分段中的对象与共享字典中的类和字符串
+     */
+    private void write_segmented(byte kind, Class<?> cl, Object[] elements) throws IOException {
+        out.writeByte(FS_SEGMENTED);
+        out.writeByte(kind);
+        write_classname(cl, false);
+        write_length(elements.length);
+        int count = (elements.length + segmentSize - 1) / segmentSize;
+        byte[][] segments = new byte[count][];
+        SegmentTask task = new SegmentTask(elements, segments, 0, count, enclosing());
+        if (ForkJoinTask.getPool() == pool) {
+            // 嵌套的大集合在当前的工作线程中继续拆分
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        write_length(count);
+        for (int i = 0; i < count; i++) {
+            write_length(Math.min(segmentSize, elements.length - i * segmentSize));
+            write_length(segments[i].length);
+        }
+        for (byte[] segment : segments) {
+            out.write(segment, 0, segment.length);
+        }
+    }
+
+    /*
+     * 分段写出时记录正在写出的 o；o 已在外层 Serializer 中写出时，各分段独立的句柄表无法引用它，
+     * 继续写出会无限递归，因此抛出 SerializeException
+     */
+    private void enter(Object o) {
+        if (writing == null) {
+            return;
+        }
+        if (enclosing != null && enclosing.contains(o)) {
+            throw new SerializeException(String.format("cycle through a segmented container: %s@%x refers back to "
+                    + "an enclosing object that is still being written, write this graph without setParallel", o
+                    .getClass().getName(), System.identityHashCode(o)));
+        }
+        writing.add(o);
+    }
+
+    private void leave() {
+        if (writing != null) {
+            writing.remove(writing.size() - 1);
+        }
+    }
+
+    /*
+     * 外层与当前 Serializer 中正在写出的全部对象，分段只读不写，可由多个线程共享
+     */
+    private Set<Object> enclosing() {
+        Set<Object> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (enclosing != null) {
+            all.addAll(enclosing);
+        }
+        all.addAll(writing);
+        return all;
+    }
+
+    /*
+     * 以与当前实例相同的格式，用一个新的 Serializer 写出 elements[from, to)
+     */
+    private byte[] write_segment(Object[] elements, int from, int to, Set<Object> enclosing) {
+        Serializer segment = new Serializer();
+        segment.started = true;
+        segment.compact = compact;
+        segment.skippable = skippable;
+        segment.indexed = indexed;
+        segment.session = session;
+        segment.pool = pool;
+        segment.segmentSize = segmentSize;
+        segment.writing = new ArrayList<>();
+        segment.enclosing = enclosing;
+        try {
+            segment.write_elements(Arrays.asList(elements).subList(from, to));
+        } catch (IOException e) {
+            throw new SerializeException(e);
+        }
+        return segment.bytes.compactData();
+    }
+
+    /*
+     * 二分分段区间 [from, to)，每个分段写入 segments 中对应的位置
+     */
+    private final class SegmentTask extends RecursiveAction {
+        private final Object[] elements;
+        private final byte[][] segments;
+        private final int from;
+        private final int to;
+        private final Set<Object> enclosing;
+
+        SegmentTask(Object[] elements, byte[][] segments, int from, int to, Set<Object> enclosing) {
+            this.elements = elements;
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+            this.enclosing = enclosing;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int start = from * segmentSize;
+                segments[from] = write_segment(elements, start, Math.min(start + segmentSize, elements.length),
+                        enclosing);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SegmentTask(elements, segments, from, mid, enclosing),
+                    new SegmentTask(elements, segments, mid, to, enclosing));
+        }
+    }
+
     /*
      * fs_super + [1,2]
      * 1. null
-     * 2. fc_super_info + primitive_variables + reference_variables[a,b]
+     * 2. fc_super_info + primitive_variables + [offset_table] + reference_variables[a,b]
      *   a. null
      *   b. reference + idx
      */
     private void write_super(Object obj, ClassDescriptor father) {
-        bytes.writeByte(FC_SUPER);
+        out.writeByte(FC_SUPER);
         if (father == null || !father.isSerializable()) {
-            bytes.writeByte(FC_NULL);
+            out.writeByte(FC_NULL);
             return;
         }
-        bytes.writeByte(FC_SUPER_INFO);
+        out.writeByte(FC_SUPER_INFO);
         // write primitive variables
         ClassDescriptor.FieldReflector fieldReflector = father.getFieldReflector();
-        bytes.writeBytes(fieldReflector.primValOfObj(obj));
+        write_primitives(fieldReflector, obj);
 
         // write reference variables
-        Integer[] refKeys = fieldReflector.getRefKeys();
+        int[] refKeys = fieldReflector.getRefKeys();
         long[] offsets = fieldReflector.getOffsets();
-        for (Integer refKey : refKeys) {
+        int tableAt = begin_index(refKeys.length);
+        for (int i = 0; i < refKeys.length; i++) {
+            int refKey = refKeys[i];
+            index_entry(tableAt, i);
             Object o = fieldReflector.valueOf(obj, refKey);
             if (o == null) {
-                bytes.writeByte(FC_NULL);
+                out.writeByte(FC_NULL);
             } else {
-                int idx = handled.indexOf(o);
+                int idx = handled.lookup(o);
                 if (idx >= 0) {
                     refer_to(idx);
                 } else {
+                    int lenAt = begin_skippable(o);
+                    int handles0 = handled.size();
+                    int classes0 = classes.size();
                     writeObject(o);
+                    end_skippable(lenAt, handles0, classes0);
                     //                    write_object(o, ClassDescriptor.resolve(o.getClass()), true, true);
                 }
             }
         } // loop end
+        index_entry(tableAt, refKeys.length);
         write_super(obj, father.getFather()); // write super recursively
     }
 
@@ -535,33 +957,37 @@ public class Serializer {
      * fs_ref_primitive + value
      **/
     private void write_ref_primitive(Class<?> cl, Object o) {
-
-        bytes.writeByte(FS_REF_PRIMITIVE);
+        handled.reserve();
+        if (compact) {
+            write_boxed(o);
+            return;
+        }
+        out.writeByte(FS_REF_PRIMITIVE);
 
         if (cl == Integer.class) {
-            bytes.writeChar('I');
-            bytes.writeInt((Integer) o);    // int
+            out.writeChar('I');
+            out.writeInt((Integer) o);    // int
         } else if (cl == Byte.class) {
-            bytes.writeChar('B');
-            bytes.writeByte((Byte) o);      // byte
+            out.writeChar('B');
+            out.writeByte((Byte) o);      // byte
         } else if (cl == Long.class) {
-            bytes.writeChar('J');
-            bytes.writeLong((Long) o);      // long
+            out.writeChar('J');
+            out.writeLong((Long) o);      // long
         } else if (cl == Float.class) {
-            bytes.writeChar('F');
-            bytes.writeFloat((Float) o);    // float
+            out.writeChar('F');
+            out.writeFloat((Float) o);    // float
         } else if (cl == Double.class) {
-            bytes.writeChar('D');
-            bytes.writeDouble((Double) o);  // double
+            out.writeChar('D');
+            out.writeDouble((Double) o);  // double
         } else if (cl == Short.class) {
-            bytes.writeChar('S');
-            bytes.writeShort((Short) o);    // short
+            out.writeChar('S');
+            out.writeShort((Short) o);    // short
         } else if (cl == Character.class) {
-            bytes.writeChar('C');
-            bytes.writeChar((Character) o); // char
+            out.writeChar('C');
+            out.writeChar((Character) o); // char
         } else if (cl == Boolean.class) {
-            bytes.writeChar('Z');
-            bytes.writeBoolean((Boolean) o); // boolean
+            out.writeChar('Z');
+            out.writeBoolean((Boolean) o); // boolean
         } else {
             throw new InternalError();
         }
@@ -571,39 +997,77 @@ public class Serializer {
      * fs_ref_primitive + value
      **/
     private void write_ref_primitive(char tc, Object o) {
-        bytes.writeByte(FS_REF_PRIMITIVE);
-        bytes.writeChar(tc);
+        handled.reserve();
+        if (compact) {
+            write_boxed(o);
+            return;
+        }
+        out.writeByte(FS_REF_PRIMITIVE);
+        out.writeChar(tc);
         switch (tc) {
             case 'Z':
-                bytes.writeBoolean((Boolean) o);
+                out.writeBoolean((Boolean) o);
                 break;
             case 'B':
-                bytes.writeByte((Byte) o);
+                out.writeByte((Byte) o);
                 break;
             case 'C':
-                bytes.writeChar((Character) o);
+                out.writeChar((Character) o);
                 break;
             case 'S':
-                bytes.writeShort((Short) o);
+                out.writeShort((Short) o);
                 break;
             case 'I':
-                bytes.writeInt((Integer) o);
+                out.writeInt((Integer) o);
                 break;
             case 'F':
-                bytes.writeFloat((Float) o);
+                out.writeFloat((Float) o);
                 break;
             case 'J':
-                bytes.writeLong((Long) o);
+                out.writeLong((Long) o);
                 break;
             case 'D':
-                bytes.writeDouble((Double) o);
+                out.writeDouble((Double) o);
                 break;
         }
     }
 
+    /*
+     * compact profile: fs_true | fs_false | fs_xxx + value, integers are zigzag varints
+     **/
+    private void write_boxed(Object o) {
+        Class<?> cl = o.getClass();
+        if (cl == Integer.class) {
+            out.writeByte(FS_INT);
+            out.writeVarInt((Integer) o);
+        } else if (cl == Long.class) {
+            out.writeByte(FS_LONG);
+            out.writeVarLong((Long) o);
+        } else if (cl == Boolean.class) {
+            out.writeByte((Boolean) o ? FS_TRUE : FS_FALSE);
+        } else if (cl == Byte.class) {
+            out.writeByte(FS_BYTE);
+            out.writeByte((Byte) o);
+        } else if (cl == Short.class) {
+            out.writeByte(FS_SHORT);
+            out.writeVarInt((Short) o);
+        } else if (cl == Character.class) {
+            out.writeByte(FS_CHAR);
+            out.writeVarInt((Character) o);
+        } else if (cl == Float.class) {
+            out.writeByte(FS_FLOAT);
+            out.writeFloat((Float) o);
+        } else if (cl == Double.class) {
+            out.writeByte(FS_DOUBLE);
+            out.writeDouble((Double) o);
+        } else {
+            throw new InternalError();
+        }
+    }
+
 
     /*
-     * fc_object + class_name* + primitive_variables + loop[1,2,3]
+     * fc_object + class_name* + primitive_variables + [offset_table] + loop[1,2,3]
      * 1. fc_null
      * 2. fc_reference + idx
      *
@@ -624,8 +1088,8 @@ public class Serializer {
 
         try {
             depth++;
-            handled.add(obj);
 
+            // 类、装箱类型与字符串由各自的写出方法分配句柄
             if (obj instanceof Class) {
                 write_class((Class<?>) obj, true);
                 return;
@@ -641,31 +1105,38 @@ public class Serializer {
                 return;
             }
 
+            handled.assign(obj);
+            enter(obj);
             if (writeClassName) {
                 write_classname(objType, writeClassFlag);
             }
 
-            bytes.writeByte(FC_OBJECT);
+            out.writeByte(FC_OBJECT);
 
             // write primitive variables
             ClassDescriptor.FieldReflector fieldReflector = descriptor.getFieldReflector();
-            bytes.writeBytes(fieldReflector.primValOfObj(obj));
+            write_primitives(fieldReflector, obj);
 
             // write reference variables
-            Integer[] refKeys = fieldReflector.getRefKeys();
+            int[] refKeys = fieldReflector.getRefKeys();
             long[] offsets = fieldReflector.getOffsets();
+            int tableAt = begin_index(refKeys.length);
 
-            for (Integer refKey : refKeys) {
+            for (int i = 0; i < refKeys.length; i++) {
+                int refKey = refKeys[i];
+                index_entry(tableAt, i);
                 FieldDescriptor fieldDescriptor = fieldReflector.getFieldDescriptor(refKey);
                 Object o = fieldReflector.valueOf(obj, refKey);
                 if (o == null) {
-                    bytes.writeByte(FC_NULL);
+                    out.writeByte(FC_NULL);
                 } else {
-                    int idx = handled.indexOf(o);
+                    int idx = handled.lookup(o);
                     if (idx >= 0) {
                         refer_to(idx);
                     } else {
-                        Class oCl = o.getClass();
+                        int lenAt = begin_skippable(o);
+                        int handles0 = handled.size();
+                        int classes0 = classes.size();
                         if (fieldDescriptor.isArray()) {
                             // array
                             write_array(o);
@@ -687,12 +1158,15 @@ public class Serializer {
                             // other object
                             write_object(o, ClassDescriptor.resolve(o.getClass()), true, true);
                         }
+                        end_skippable(lenAt, handles0, classes0);
                     }
                 }
             } // loop end
 
+            index_entry(tableAt, refKeys.length);
             write_super(obj, descriptor.getFather());
-            bytes.writeByte(FC_OBJECT_END);
+            out.writeByte(FC_OBJECT_END);
+            leave();
 
         } finally {
             depth--;
@@ -700,15 +1174,23 @@ public class Serializer {
     }
 
     private void write_string(final String obj) throws IOException {
-        bytes.writeByte(FS_STRING);
-        bytes.writeString(obj);
+        handled.assign(obj);
+        int id;
+        if (session != null && (id = session.stringId(obj)) >= 0) {
+            out.writeByte(FS_SHARED_STRING);
+            out.writeLen(id);
+            return;
+        }
+        out.writeByte(FS_STRING);
+        out.writeString(obj);
     }
 
     private void write_class(final Class<?> cl, boolean writeFlag) throws IOException {
+        handled.assign(cl);
         if (writeFlag) {
-            bytes.writeByte(FS_CLASS);
+            out.writeByte(FS_CLASS);
         }
-        bytes.writeString(cl.getCanonicalName().replace('.', '/'));
+        write_classname(cl, false);
     }
 
     private void checkSerializable(Class<?> cl) {
@@ -0,0 +1,123 @@
+package cn.zzu.ss.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * 会话级共享字典，由通信双方在建立连接时约定一次，之后的对象流中以很小的 id 引用字典中的类与字符串。
+ * <p>
+ * 字典一旦创建便不可变，可在多个线程间共享。双方须持有顺序完全一致的字典，
+ * 使用字典的对象流以 FC_SESSION + 指纹开头，读取方据此校验。
+ *
+ * @see Serializer#share(SessionDictionary)
+ * @see Deserializer#share(SessionDictionary)
+ * @since 1.8
+ */
+public final class SessionDictionary {
+    private final Class<?>[] classes;
+    private final String[] classNames;
+    private final String[] strings;
+    private final HandleTable classIds;
+    private final Map<String, Integer> stringIds;
+    private final int fingerprint;
+
+    private SessionDictionary(final Class<?>[] classes, final String[] classNames, final String[] strings) {
+        this.classes = classes;
+        this.classNames = classNames;
+        this.strings = strings;
+
+        this.classIds = new HandleTable(classes.length * 2);
+        for (Class<?> cl : classes) {
+            classIds.assign(cl);
+        }
+        this.stringIds = new HashMap<>(strings.length * 2);
+        for (int i = 0; i < strings.length; i++) {
+            stringIds.putIfAbsent(strings[i], i);
+        }
+        this.fingerprint = 31 * Arrays.hashCode(classNames) + Arrays.hashCode(strings);
+    }
+
+    /**
+     * 由本地的类与字符串创建字典，重复项只保留第一个
+     */
+    public static SessionDictionary of(Collection<Class<?>> classes, Collection<String> strings) {
+        Class<?>[] cls = new LinkedHashSet<>(classes).toArray(new Class<?>[0]);
+        String[] names = new String[cls.length];
+        for (int i = 0; i < cls.length; i++) {
+            names[i] = cls[i].getName();
+        }
+        return new SessionDictionary(cls, names, new LinkedHashSet<>(strings).toArray(new String[0]));
+    }
+
+    /**
+     * 由对方发来的 {@link #names()} 还原字典。本地无法加载的类占位为 null，只有在被引用时才会报错。
+     */
+    public static SessionDictionary resolve(String[][] names) {
+        if (names == null || names.length != 2) {
+            throw new DeserializeException("invalid session dictionary");
+        }
+        String[] classNames = names[0];
+        Class<?>[] cls = new Class<?>[classNames.length];
+        for (int i = 0; i < classNames.length; i++) {
+            try {
+                cls[i] = Class.forName(classNames[i]);
+            } catch (ClassNotFoundException ignored) {
+            }
+        }
+        return new SessionDictionary(cls, classNames, names[1]);
+    }
+
+    /**
+     * 用于传输的字典内容：{类名数组, 字符串数组}
+     */
+    public String[][] names() {
+        return new String[][]{classNames.clone(), strings.clone()};
+    }
+
+    int fingerprint() {
+        return fingerprint;
+    }
+
+    int classCount() {
+        return classes.length;
+    }
+
+    /**
+     * @return 类在字典中的下标，不存在时返回 -1
+     */
+    int classId(Class<?> cl) {
+        return classIds.lookup(cl);
+    }
+
+    Class<?> classAt(int id) {
+        Class<?> cl = classes[id];
+        if (cl == null) {
+            throw new DeserializeException(new ClassNotFoundException(classNames[id]));
+        }
+        return cl;
+    }
+
+    /**
+     * @return 字符串在字典中的下标，不存在时返回 -1
+     */
+    int stringId(String s) {
+        Integer id = stringIds.get(s);
+        return id == null ? -1 : id;
+    }
+
+    String stringAt(int id) {
+        if (id < 0 || id >= strings.length) {
+            throw new DeserializeException(String.format("unknown shared string id %d", id));
+        }
+        return strings[id];
+    }
+
+    @Override
+    public String toString() {
+        return "SessionDictionary{" + "classes=" + Arrays.toString(classNames) + ", strings=" + Arrays
+                .toString(strings) + '}';
+    }
+}
@@ -0,0 +1,82 @@
+package cn.zzu.ss.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 堆外内存块（slab）池。内存块按 2 的幂划分大小等级，从 4KB 到 1GB，
+ * 每个等级最多缓存 MAX_POOLED_BYTES 字节，全部等级合计最多缓存 MAX_TOTAL_BYTES 字节；
+ * 大于 MAX_POOLED_BYTES 的等级只分配不缓存，超过 1GB 的请求不分等级。
+ *
+ * @see DirectBytes
+ * @since 1.8
+ */
+final class SlabPool {
+    private static final int MIN_SHIFT = 12;    // 4KB
+    private static final int MAX_SHIFT = 30;    // 1GB
+    private static final long MAX_POOLED_BYTES = 256L << 20; // 每个等级最多缓存 256MB
+    private static final long MAX_TOTAL_BYTES = 512L << 20;  // 全部等级合计最多缓存 512MB
+
+    /* 不缓存的等级为 null */
+    private static final BlockingQueue<ByteBuffer>[] CLASSES;
+    /* 池中缓存的字节数 */
+    private static final AtomicLong POOLED = new AtomicLong();
+
+    static {
+        @SuppressWarnings("unchecked")
+        BlockingQueue<ByteBuffer>[] classes = new BlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            long size = 1L << (MIN_SHIFT + i);
+            classes[i] = size > MAX_POOLED_BYTES ? null : new ArrayBlockingQueue<>((int) (MAX_POOLED_BYTES / size));
+        }
+        CLASSES = classes;
+    }
+
+    private SlabPool() {
+    }
+
+    /**
+     * 获取一个容量不小于 minCapacity 的内存块，position 为 0，limit 为 capacity
+     */
+    static ByteBuffer acquire(int minCapacity) {
+        if (minCapacity < 0) throw new NegativeArraySizeException();
+        int idx = sizeClass(minCapacity);
+        if (idx < 0) {
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+        BlockingQueue<ByteBuffer> pooled = CLASSES[idx];
+        ByteBuffer slab = pooled == null ? null : pooled.poll();
+        if (slab != null) {
+            POOLED.addAndGet(-slab.capacity());
+        } else {
+            slab = ByteBuffer.allocateDirect(1 << (MIN_SHIFT + idx));
+        }
+        slab.clear();
+        return slab;
+    }
+
+    /**
+     * 归还内存块，池已满、等级不缓存或内存块不属于任何等级时交给 GC 回收
+     */
+    static void recycle(ByteBuffer slab) {
+        int cap = slab.capacity();
+        if (Integer.bitCount(cap) != 1) return;
+        int idx = Integer.numberOfTrailingZeros(cap) - MIN_SHIFT;
+        if (idx < 0 || idx >= CLASSES.length || CLASSES[idx] == null) return;
+        // 先占用总额度，入池失败时退还
+        if (POOLED.addAndGet(cap) > MAX_TOTAL_BYTES || !CLASSES[idx].offer(slab)) {
+            POOLED.addAndGet(-cap);
+        }
+    }
+
+    /**
+     * 返回不小于 capacity 的最小等级，超出最大等级时返回 -1
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= (1 << MIN_SHIFT)) return 0;
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+}
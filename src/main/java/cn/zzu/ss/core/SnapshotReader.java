@@ -0,0 +1,364 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.Bits;
+import cn.zzu.ss.util.InvalidIndexException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+import static cn.zzu.ss.core.SnapshotWriter.address;
+
+/**
+ * 从内存映射的快照文件反序列化 {@link SnapshotWriter} 写出的对象，数据直接从页缓存读取，
+ * 不把文件读进堆上的 byte[]。文件按 regionSize 分段只读映射，可以读取超过 2GB 的快照。
+ * <p>
+ * 基本类型数组从映射区整块拷贝，跨越两段的值与数组元素逐字节拼接。
+ * 并行解码时各分段在共用映射的视图上读取，不拷贝到堆上，见 {@link #setParallel(ForkJoinPool)}。
+ *
+ * @see SnapshotWriter
+ * @since 1.8
+ */
+public final class SnapshotReader implements Closeable {
+
+    private final Source source;
+    private final Deserializer deserializer;
+
+    public SnapshotReader(Path file) throws IOException {
+        this(file, SnapshotWriter.DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param file       快照文件
+     * @param regionSize 每段映射的大小，至少 64 字节，与写出时的大小无关
+     */
+    public SnapshotReader(Path file, int regionSize) throws IOException {
+        if (regionSize < SnapshotWriter.MIN_REGION_SIZE) {
+            throw new IllegalArgumentException("region size must be at least " + SnapshotWriter.MIN_REGION_SIZE + ": "
+                    + regionSize);
+        }
+        try (FileChannel channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.READ)) {
+            // 映射建立后不依赖 channel
+            source = new Source(channel, regionSize);
+        }
+        deserializer = new Deserializer(source);
+    }
+
+    /**
+     * 按写出的顺序读出下一个对象，快照读完时返回 null
+     */
+    public Object readObject() {
+        return deserializer.readObject();
+    }
+
+    /**
+     * 投影读取下一个对象，见 {@link Deserializer#readObject(Class, String...)}；被跳过的值按 long 的位置回头解码，
+     * 超过 2GB 的快照同样适用
+     */
+    public <T> T readObject(Class<T> type, String... fieldPaths) {
+        return deserializer.readObject(type, fieldPaths);
+    }
+
+    /**
+     * 在 pool 中并行解码 {@link Serializer#setParallel(ForkJoinPool, int) 分段写出的} 集合与数组，
+     * 见 {@link Deserializer#setParallel(ForkJoinPool)}
+     *
+     * @param pool 解码分段的线程池，为 null 时顺序解码
+     */
+    public void setParallel(ForkJoinPool pool) {
+        deserializer.setParallel(pool);
+    }
+
+    /**
+     * 快照文件的大小
+     */
+    public long size() {
+        return source.limit;
+    }
+
+    /**
+     * 解除全部映射，之后不可再读取
+     */
+    @Override
+    public void close() {
+        deserializer.reset();
+        source.release();
+    }
+
+    /*
+     * 位置 p 位于第 p / regionSize 段的 p % regionSize 处，使用绝对位置读取，各段的 position 不变
+     */
+    private static final class Source implements SerialSource {
+        private final MappedByteBuffer[] regions;
+        private final int regionSize;
+        private final long limit;
+        private long position;
+        private final byte[] scratch = new byte[8];
+        private byte[] strBytes;
+        private char[] chars;
+
+        Source(FileChannel channel, int regionSize) throws IOException {
+            this.regionSize = regionSize;
+            this.limit = channel.size();
+            int count = (int) ((limit + regionSize - 1) / regionSize);
+            regions = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i * regionSize;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, limit - start));
+            }
+        }
+
+        /*
+         * 共用 parent 的映射、读取 [start, limit) 的视图
+         */
+        private Source(Source parent, long start, long limit) {
+            this.regions = parent.regions;
+            this.regionSize = parent.regionSize;
+            this.limit = limit;
+            this.position = start;
+        }
+
+        @Override
+        public int readable() {
+            return (int) Math.min(limit - position, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public byte peekByte() {
+            check(1);
+            return region().get(regionOffset());
+        }
+
+        @Override
+        public short peekShort() {
+            check(2);
+            MappedByteBuffer cur = region();
+            int off = regionOffset();
+            if (off + 2 <= cur.limit()) {
+                return cur.getShort(off);
+            }
+            gather(2);
+            position -= 2;
+            return Bits.getShort(scratch, 0);
+        }
+
+        /**
+         * @return 跳过之后的位置，超过 int 范围时为 Integer.MAX_VALUE
+         */
+        @Override
+        public int skipBytes(int n) {
+            long p = position + n;
+            if (p < 0 || p > limit) {
+                throw new InvalidIndexException(String.format("%d out of bound %d - %d", p, position, limit));
+            }
+            position = p;
+            return (int) Math.min(p, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean seekable() {
+            return true;
+        }
+
+        @Override
+        public long offset() {
+            return position;
+        }
+
+        @Override
+        public void seek(long offset) {
+            if (offset < 0 || offset > limit) {
+                throw new InvalidIndexException(String.format("%d out of bound %d - %d", offset, 0, limit));
+            }
+            position = offset;
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte() {
+            check(1);
+            byte b = region().get(regionOffset());
+            position++;
+            return b;
+        }
+
+        @Override
+        public short readShort() {
+            MappedByteBuffer cur = fixed(2);
+            if (cur == null) {
+                return Bits.getShort(scratch, 0);
+            }
+            short v = cur.getShort(regionOffset());
+            position += 2;
+            return v;
+        }
+
+        @Override
+        public char readChar() {
+            return (char) readShort();
+        }
+
+        @Override
+        public int readInt() {
+            MappedByteBuffer cur = fixed(4);
+            if (cur == null) {
+                return Bits.getInt(scratch, 0);
+            }
+            int v = cur.getInt(regionOffset());
+            position += 4;
+            return v;
+        }
+
+        @Override
+        public long readLong() {
+            MappedByteBuffer cur = fixed(8);
+            if (cur == null) {
+                return Bits.getLong(scratch, 0);
+            }
+            long v = cur.getLong(regionOffset());
+            position += 8;
+            return v;
+        }
+
+        @Override
+        public float readFloat() {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        @Override
+        public String readString() {
+            int len = readLen();
+            if (len > PrimitiveArrays.CHUNK_SIZE) {
+                byte[] str = new byte[len];
+                read(str, 0, len);
+                return Utf8.decode(str, 0, len, new char[len]);
+            }
+            if (strBytes == null) {
+                strBytes = new byte[PrimitiveArrays.CHUNK_SIZE];
+                chars = new char[PrimitiveArrays.CHUNK_SIZE];
+            }
+            read(strBytes, 0, len);
+            return Utf8.decode(strBytes, 0, len, chars);
+        }
+
+        @Override
+        public String peekString() {
+            long start = position;
+            String s = readString();
+            position = start;
+            return s;
+        }
+
+        @Override
+        public byte[] readBytes() {
+            int len = readLen();
+            byte[] bytes = new byte[len];
+            read(bytes, 0, len);
+            return bytes;
+        }
+
+        @Override
+        public void read(byte[] b, int off, int len) {
+            Objects.requireNonNull(b);
+            check(len);
+            while (len > 0) {
+                MappedByteBuffer cur = region();
+                int from = regionOffset();
+                int n = Math.min(len, cur.limit() - from);
+                PrimitiveArrays.copy(null, address(cur) + from, b, PrimitiveArrays.BYTE_BASE + off, n, 1, false);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public SerialSource slice(int length) {
+            check(length);
+            Source view = new Source(this, position, position + length);
+            position += length;
+            return view;
+        }
+
+        @Override
+        public void readArray(Object array, boolean swap) {
+            long bytes = PrimitiveArrays.byteLength(array);
+            long dst = PrimitiveArrays.base(array);
+            int scale = PrimitiveArrays.scale(array);
+            check(bytes);
+            for (long done = 0; done < bytes; ) {
+                MappedByteBuffer cur = region();
+                int from = regionOffset();
+                // 只拷贝整数个元素，跨段的元素经由 scratch 拼接
+                int n = (int) Math.min(cur.limit() - from, bytes - done);
+                n -= n % scale;
+                if (n == 0) {
+                    read(scratch, 0, scale);
+                    PrimitiveArrays.copy(scratch, PrimitiveArrays.BYTE_BASE, array, dst + done, scale, scale, swap);
+                    done += scale;
+                    continue;
+                }
+                PrimitiveArrays.copy(null, address(cur) + from, array, dst + done, n, scale, swap);
+                position += n;
+                done += n;
+            }
+        }
+
+        /*-------------------------------------------------------*/
+
+        private MappedByteBuffer region() {
+            return regions[(int) (position / regionSize)];
+        }
+
+        private int regionOffset() {
+            return (int) (position % regionSize);
+        }
+
+        /*
+         * 读取 n 字节的定长值前调用：值位于同一段时返回该段，否则拼接到 scratch 并返回 null
+         */
+        private MappedByteBuffer fixed(int n) {
+            check(n);
+            MappedByteBuffer cur = region();
+            if (regionOffset() + n <= cur.limit()) {
+                return cur;
+            }
+            gather(n);
+            return null;
+        }
+
+        private void gather(int n) {
+            for (int i = 0; i < n; i++) {
+                scratch[i] = region().get(regionOffset());
+                position++;
+            }
+        }
+
+        private void check(long n) {
+            if (position + n > limit || n < 0) {
+                throw new InvalidIndexException(String.format("%d out of bound %d - %d", position + n, position, limit));
+            }
+        }
+
+        void release() {
+            for (int i = 0; i < regions.length; i++) {
+                SnapshotWriter.unmap(regions[i]);
+                regions[i] = null;
+            }
+        }
+    }
+}
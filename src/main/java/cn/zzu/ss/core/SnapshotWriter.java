@@ -0,0 +1,246 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.Bits;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * 将对象图直接序列化进内存映射的快照文件，数据经由页缓存写出，不在堆上积累。
+ * 文件按 regionSize 分段映射，每次只映射一段，因而可以写出超过 2GB 的快照。
+ * <p>
+ * 多次 {@link #writeObject(Object)} 属于同一个对象流，后写的对象可以引用先写的对象，
+ * 由 {@link SnapshotReader} 按相同顺序读出。{@link #close()} 之后文件被截断到实际写出的长度。
+ * 写出失败时抛出 {@link SerializeException}。
+ *
+ * @see SnapshotReader
+ * @since 1.8
+ */
+public final class SnapshotWriter implements Closeable {
+    static final int DEFAULT_REGION_SIZE = 1 << 30;
+    /* 最小的映射段，保证任意单个定长值与长度前缀都能放下 */
+    static final int MIN_REGION_SIZE = 64;
+
+    private final FileChannel channel;
+    private final Serializer serializer;
+    private final Sink sink;
+
+    public SnapshotWriter(Path file) throws IOException {
+        this(file, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param file       快照文件，已存在时被覆盖
+     * @param regionSize 每段映射的大小，至少 64 字节
+     */
+    public SnapshotWriter(Path file, int regionSize) throws IOException {
+        if (regionSize < MIN_REGION_SIZE) {
+            throw new IllegalArgumentException("region size must be at least " + MIN_REGION_SIZE + ": " + regionSize);
+        }
+        channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        sink = new Sink(channel, regionSize);
+        serializer = new Serializer();
+        serializer.redirect(sink);
+    }
+
+    public void writeObject(Object obj) {
+        serializer.writeObject(obj);
+    }
+
+    /**
+     * 已写出的字节数
+     */
+    public long size() {
+        return sink.position;
+    }
+
+    /**
+     * 解除映射并将文件截断到实际长度
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sink.release();
+            channel.truncate(sink.position);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 解除 buf 的映射，之后不可再访问 buf
+     */
+    static void unmap(MappedByteBuffer buf) {
+        if (buf != null) {
+            ((DirectBuffer) buf).cleaner().clean();
+        }
+    }
+
+    static long address(MappedByteBuffer buf) {
+        return ((DirectBuffer) buf).address();
+    }
+
+    /*
+     * 写入当前映射段，写满时映射下一段；跨越两段的值逐字节写入
+     */
+    private static final class Sink implements SerialSink {
+        private final FileChannel channel;
+        private final int regionSize;
+        private MappedByteBuffer region;
+        /* 已写出的字节数 */
+        private long position;
+        /* 跨段写入定长值与编码字符串时的临时数组 */
+        private final byte[] scratch = new byte[8];
+        private byte[] strBytes;
+        private char[] chars;
+
+        Sink(FileChannel channel, int regionSize) {
+            this.channel = channel;
+            this.regionSize = regionSize;
+        }
+
+        @Override
+        public void writeBoolean(boolean v) {
+            writeByte((byte) (v ? 1 : 0));
+        }
+
+        @Override
+        public void writeByte(byte v) {
+            region().put(v);
+            position++;
+        }
+
+        @Override
+        public void writeShort(int v) {
+            if (ensure(2)) {
+                region.putShort((short) v);
+                position += 2;
+            } else {
+                Bits.putShort(scratch, 0, (short) v);
+                write(scratch, 0, 2);
+            }
+        }
+
+        @Override
+        public void writeChar(int v) {
+            if (ensure(2)) {
+                region.putChar((char) v);
+                position += 2;
+            } else {
+                Bits.putChar(scratch, 0, (char) v);
+                write(scratch, 0, 2);
+            }
+        }
+
+        @Override
+        public void writeInt(int v) {
+            if (ensure(4)) {
+                region.putInt(v);
+                position += 4;
+            } else {
+                Bits.putInt(scratch, 0, v);
+                write(scratch, 0, 4);
+            }
+        }
+
+        @Override
+        public void writeLong(long v) {
+            if (ensure(8)) {
+                region.putLong(v);
+                position += 8;
+            } else {
+                Bits.putLong(scratch, 0, v);
+                write(scratch, 0, 8);
+            }
+        }
+
+        @Override
+        public void writeFloat(float v) {
+            writeInt(Float.floatToIntBits(v));
+        }
+
+        @Override
+        public void writeDouble(double v) {
+            writeLong(Double.doubleToLongBits(v));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            Objects.requireNonNull(b);
+            while (len > 0) {
+                MappedByteBuffer cur = region();
+                int n = Math.min(len, cur.remaining());
+                cur.put(b, off, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void writeString(String s) throws IOException {
+            int len = s.length();
+            if (len > PrimitiveArrays.CHUNK_SIZE / 3) {
+                SerialSink.super.writeString(s);
+                return;
+            }
+            if (chars == null) {
+                chars = new char[PrimitiveArrays.CHUNK_SIZE / 3];
+                strBytes = new byte[PrimitiveArrays.CHUNK_SIZE];
+            }
+            s.getChars(0, len, chars, 0);
+            int strLen = Utf8.encode(chars, len, strBytes, 0);
+            writeLen(strLen);
+            write(strBytes, 0, strLen);
+        }
+
+        @Override
+        public void writeArray(Object array) {
+            long bytes = PrimitiveArrays.byteLength(array);
+            long base = PrimitiveArrays.base(array);
+            for (long done = 0; done < bytes; ) {
+                MappedByteBuffer cur = region();
+                int n = (int) Math.min(cur.remaining(), bytes - done);
+                PrimitiveArrays.copy(array, base + done, null, address(cur) + cur.position(), n, 1, false);
+                cur.position(cur.position() + n);
+                position += n;
+                done += n;
+            }
+        }
+
+        /*
+         * 当前段是否还能放下 n 个字节，当前段已写满时映射下一段
+         */
+        private boolean ensure(int n) {
+            return region().remaining() >= n;
+        }
+
+        /*
+         * 返回还有剩余空间的当前段
+         */
+        private MappedByteBuffer region() {
+            if (region == null || !region.hasRemaining()) {
+                unmap(region);
+                region = null;
+                try {
+                    region = channel.map(FileChannel.MapMode.READ_WRITE, position, regionSize);
+                } catch (IOException e) {
+                    throw new SerializeException(e);
+                }
+            }
+            return region;
+        }
+
+        void release() {
+            unmap(region);
+            region = null;
+        }
+    }
+}
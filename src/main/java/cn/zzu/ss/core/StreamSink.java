@@ -0,0 +1,200 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.Bits;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * 经由大小固定的缓冲区写入 OutputStream 或 WritableByteChannel 的 {@link SerialSink}，
+ * 缓冲区写满即写出，占用的内存与写入的数据量无关。写出失败时抛出 {@link SerializeException}。
+ * <p>
+ * 写入的单个值不会跨越两次写出，超过缓冲区大小的字节数组、基本类型数组与字符串分段写出。
+ *
+ * @see Serializer#streamTo(OutputStream, int)
+ * @see Serializer#streamTo(WritableByteChannel, int)
+ * @since 1.8
+ */
+final class StreamSink implements SerialSink, Flushable {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /* 最小的缓冲区，保证任意单个定长值与长度前缀都能放下 */
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final OutputStream os;
+    private final WritableByteChannel channel;
+    private final byte[] buf;
+    /* 对 buf 的包装，只在写入 channel 时使用 */
+    private final ByteBuffer wrapper;
+    /* buf 中待写出的字节数 */
+    private int count;
+    /* 编码字符串时复用的临时数组，最多 buf.length / 3 个字符 */
+    private char[] chars;
+
+    StreamSink(OutputStream os, int bufferSize) {
+        this(Objects.requireNonNull(os), null, bufferSize);
+    }
+
+    StreamSink(WritableByteChannel channel, int bufferSize) {
+        this(null, Objects.requireNonNull(channel), bufferSize);
+    }
+
+    private StreamSink(OutputStream os, WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer size must be at least " + MIN_BUFFER_SIZE + ": " + bufferSize);
+        }
+        this.os = os;
+        this.channel = channel;
+        this.buf = new byte[bufferSize];
+        this.wrapper = channel == null ? null : ByteBuffer.wrap(buf);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+        ensure(1);
+        buf[count++] = (byte) (v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(byte v) {
+        ensure(1);
+        buf[count++] = v;
+    }
+
+    @Override
+    public void writeShort(int v) {
+        ensure(2);
+        Bits.putShort(buf, count, (short) v);
+        count += 2;
+    }
+
+    @Override
+    public void writeChar(int v) {
+        ensure(2);
+        Bits.putChar(buf, count, (char) v);
+        count += 2;
+    }
+
+    @Override
+    public void writeInt(int v) {
+        ensure(4);
+        Bits.putInt(buf, count, v);
+        count += 4;
+    }
+
+    @Override
+    public void writeLong(long v) {
+        ensure(8);
+        Bits.putLong(buf, count, v);
+        count += 8;
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        ensure(4);
+        Bits.putFloat(buf, count, v);
+        count += 4;
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        ensure(8);
+        Bits.putDouble(buf, count, v);
+        count += 8;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        Objects.requireNonNull(b);
+        if (len >= buf.length) {
+            // 大块数据不经过缓冲区
+            spill();
+            writeThrough(b, off, len);
+            return;
+        }
+        ensure(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void writeString(String s) throws IOException {
+        int len = s.length();
+        if (len > buf.length / 3) {
+            // 编码后可能放不下缓冲区，逐字节写出
+            SerialSink.super.writeString(s);
+            return;
+        }
+        if (chars == null || chars.length < len) {
+            chars = new char[Math.max(len, 64)];
+        }
+        s.getChars(0, len, chars, 0);
+        int strLen = Utf8.length(chars, len);
+        writeLen(strLen);
+        ensure(strLen);
+        count = Utf8.encode(chars, len, buf, count);
+    }
+
+    @Override
+    public void writeArray(Object array) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        long base = PrimitiveArrays.base(array);
+        for (long done = 0; done < bytes; ) {
+            if (count == buf.length) {
+                spill();
+            }
+            int n = (int) Math.min(buf.length - count, bytes - done);
+            PrimitiveArrays.copy(array, base + done, buf, PrimitiveArrays.BYTE_BASE + count, n, 1, false);
+            count += n;
+            done += n;
+        }
+    }
+
+    /**
+     * 写出缓冲区中的数据并 flush 底层的输出流
+     */
+    @Override
+    public void flush() throws IOException {
+        spill();
+        if (os != null) {
+            os.flush();
+        }
+    }
+
+    /*------------------- private methods -----------------*/
+
+    private void ensure(int n) {
+        if (count + n > buf.length) {
+            spill();
+        }
+    }
+
+    /*
+     * 写出缓冲区中的全部数据
+     */
+    private void spill() {
+        if (count > 0) {
+            writeThrough(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeThrough(byte[] b, int off, int len) {
+        try {
+            if (os != null) {
+                os.write(b, off, len);
+            } else {
+                ByteBuffer src = b == buf ? wrapper : ByteBuffer.wrap(b);
+                src.limit(off + len).position(off);
+                while (src.hasRemaining()) {
+                    channel.write(src);
+                }
+            }
+        } catch (IOException e) {
+            throw new SerializeException(e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package cn.zzu.ss.core;
+
+import cn.zzu.ss.util.Bits;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * 经由大小固定的窗口从 InputStream 或 ReadableByteChannel 读取的 {@link SerialSource}，
+ * 窗口读空时从底层输入补充，占用的内存与对象流的长度无关。读取失败或数据提前结束时抛出 {@link DeserializeException}。
+ * <p>
+ * 补充窗口时保留已读的最后一个字节，以支持 {@link Deserializer} 读出标志后的 skipBytes(-1)。
+ * 超过窗口大小的字符串与字节数组直接读入各自的数组，基本类型数组分段拷贝。
+ *
+ * @see Deserializer#Deserializer(InputStream, int)
+ * @see Deserializer#Deserializer(ReadableByteChannel, int)
+ * @since 1.8
+ */
+final class StreamSource implements SerialSource {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /* 最小的窗口，保证任意单个定长值与长度前缀都能放下 */
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final InputStream is;
+    private final ReadableByteChannel channel;
+    private final byte[] buf;
+    /* 对 buf 的包装，只在读取 channel 时使用 */
+    private final ByteBuffer wrapper;
+    /* 窗口中的读位置与数据末尾 */
+    private int pos;
+    private int lim;
+    /* buf[0] 在整个输入中的位置 */
+    private long base;
+    private boolean eof;
+    /* 解码字符串时复用的临时数组 */
+    private char[] chars;
+
+    StreamSource(InputStream is, int bufferSize) {
+        this(Objects.requireNonNull(is), null, bufferSize);
+    }
+
+    StreamSource(ReadableByteChannel channel, int bufferSize) {
+        this(null, Objects.requireNonNull(channel), bufferSize);
+    }
+
+    private StreamSource(InputStream is, ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer size must be at least " + MIN_BUFFER_SIZE + ": " + bufferSize);
+        }
+        this.is = is;
+        this.channel = channel;
+        this.buf = new byte[bufferSize];
+        this.wrapper = channel == null ? null : ByteBuffer.wrap(buf);
+    }
+
+    /**
+     * 窗口中可读的字节数，窗口为空时先尝试补充，返回 0 表示输入已结束
+     */
+    @Override
+    public int readable() {
+        if (pos == lim && !eof) {
+            fill(1, false);
+        }
+        return lim - pos;
+    }
+
+    @Override
+    public byte peekByte() {
+        ensure(1);
+        return buf[pos];
+    }
+
+    @Override
+    public short peekShort() {
+        ensure(2);
+        return Bits.getShort(buf, pos);
+    }
+
+    /**
+     * @return 跳过之后在整个输入中的位置
+     */
+    @Override
+    public int skipBytes(int n) {
+        if (n < 0) {
+            if (pos + n < 0) {
+                throw new DeserializeException("cannot step back " + -n + " bytes in a stream");
+            }
+            pos += n;
+        } else {
+            for (int left = n; left > 0; ) {
+                if (pos == lim) {
+                    fill(1, true);
+                }
+                int step = Math.min(left, lim - pos);
+                pos += step;
+                left -= step;
+            }
+        }
+        return (int) (base + pos);
+    }
+
+    @Override
+    public boolean readBoolean() {
+        ensure(1);
+        return Bits.getBoolean(buf, pos++);
+    }
+
+    @Override
+    public byte readByte() {
+        ensure(1);
+        return buf[pos++];
+    }
+
+    @Override
+    public short readShort() {
+        ensure(2);
+        pos += 2;
+        return Bits.getShort(buf, pos - 2);
+    }
+
+    @Override
+    public char readChar() {
+        ensure(2);
+        pos += 2;
+        return Bits.getChar(buf, pos - 2);
+    }
+
+    @Override
+    public int readInt() {
+        ensure(4);
+        pos += 4;
+        return Bits.getInt(buf, pos - 4);
+    }
+
+    @Override
+    public long readLong() {
+        ensure(8);
+        pos += 8;
+        return Bits.getLong(buf, pos - 8);
+    }
+
+    @Override
+    public float readFloat() {
+        ensure(4);
+        pos += 4;
+        return Bits.getFloat(buf, pos - 4);
+    }
+
+    @Override
+    public double readDouble() {
+        ensure(8);
+        pos += 8;
+        return Bits.getDouble(buf, pos - 8);
+    }
+
+    @Override
+    public String readString() {
+        int len = readLen();
+        if (len > buf.length - 1) {
+            byte[] str = new byte[len];
+            read(str, 0, len);
+            return Utf8.decode(str, 0, len, new char[len]);
+        }
+        ensure(len);
+        pos += len;
+        return Utf8.decode(buf, pos - len, len, chars(len));
+    }
+
+    /**
+     * 预读的字符串连同长度前缀须能放进窗口
+     */
+    @Override
+    public String peekString() {
+        int start = pos;
+        int len = readLen();
+        int prefix = pos - start;
+        pos = start;
+        if (prefix + len > buf.length - 1) {
+            throw new DeserializeException("string of " + len + " bytes is larger than the stream window");
+        }
+        ensure(prefix + len);
+        return Utf8.decode(buf, pos + prefix, len, chars(len));
+    }
+
+    @Override
+    public byte[] readBytes() {
+        int len = readLen();
+        byte[] bytes = new byte[len];
+        read(bytes, 0, len);
+        return bytes;
+    }
+
+    @Override
+    public void read(byte[] b, int off, int len) {
+        Objects.requireNonNull(b);
+        while (len > 0) {
+            if (pos == lim) {
+                fill(1, true);
+            }
+            int n = Math.min(len, lim - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void readArray(Object array, boolean swap) {
+        long bytes = PrimitiveArrays.byteLength(array);
+        long dst = PrimitiveArrays.base(array);
+        int scale = PrimitiveArrays.scale(array);
+        for (long done = 0; done < bytes; ) {
+            if (lim - pos < scale) {
+                ensure(scale);
+            }
+            // 每段都是整数个元素，翻转字节序时元素不会被截断
+            int n = (int) Math.min(lim - pos, bytes - done);
+            n -= n % scale;
+            PrimitiveArrays.copy(buf, PrimitiveArrays.BYTE_BASE + pos, array, dst + done, n, scale, swap);
+            pos += n;
+            done += n;
+        }
+    }
+
+    /*------------------- private methods -----------------*/
+
+    /*
+     * 保证窗口中至少有 n 个可读字节
+     */
+    private void ensure(int n) {
+        if (lim - pos < n) {
+            fill(n, true);
+        }
+    }
+
+    /*
+     * 将未读数据与已读的最后一个字节移到窗口开头，再读入数据直到至少有 n 个可读字节。
+     * required 为 false 时输入结束不视为错误
+     */
+    private void fill(int n, boolean required) {
+        int keep = pos > 0 ? pos - 1 : 0;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, lim - keep);
+            base += keep;
+            pos -= keep;
+            lim -= keep;
+        }
+        while (lim - pos < n) {
+            int r = eof ? -1 : readThrough();
+            if (r < 0) {
+                eof = true;
+                if (required) {
+                    throw new DeserializeException("unexpected end of stream");
+                }
+                return;
+            }
+            lim += r;
+        }
+    }
+
+    private int readThrough() {
+        try {
+            if (is != null) {
+                return is.read(buf, lim, buf.length - lim);
+            }
+            wrapper.limit(buf.length).position(lim);
+            return channel.read(wrapper);
+        } catch (IOException e) {
+            throw new DeserializeException(e);
+        }
+    }
+
+    private char[] chars(int len) {
+        if (chars == null || chars.length < len) {
+            chars = new char[Math.max(len, 64)];
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,190 @@
+package cn.zzu.ss.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 不经过字符集查找和中间 byte[] 的 UTF-8 编解码，结果与 String.getBytes("UTF-8")、
+ * new String(bytes, "UTF-8") 一致：成对的代理项编码为 4 字节，落单的代理项替换为 '?'。
+ * <p>
+ * 对象流中的字符串大多是类名、标识符一类的 ASCII 文本，编码、解码与计算长度都先按 ASCII 快速处理，
+ * 遇到第一个非 ASCII 字符才进入通用的逐字符处理。能复用 char[] 的调用方（如 {@link Bytes}）
+ * 先用 String.getChars 整块取出字符再处理，比逐个 charAt 快得多。
+ *
+ * @see SerialSink#writeString(String)
+ * @see Bytes#writeString(String)
+ * @see Bytes#readString()
+ * @since 1.8
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * s 编码后的字节数
+     */
+    static int length(String s) {
+        int len = s.length();
+        int n = len;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                n += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 2;     // 两个 char 共 4 字节
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                n += 2;
+            }
+            // 落单的代理项替换为 1 字节的 '?'
+        }
+        return n;
+    }
+
+    /**
+     * chars[0, len) 编码后的字节数
+     */
+    static int length(char[] chars, int len) {
+        int i = 0;
+        while (i < len && chars[i] < 0x80) {
+            i++;
+        }
+        int n = len;
+        for (; i < len; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                n += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(chars[i + 1])) {
+                n += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                n += 2;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 将 chars[0, len) 编码到 dst[off, off + length(chars, len))
+     *
+     * @return 编码结束后的位置
+     */
+    static int encode(char[] chars, int len, byte[] dst, int off) {
+        int i = 0;
+        // ASCII 前缀逐字符拷贝，没有其它分支
+        for (char c; i < len && (c = chars[i]) < 0x80; i++) {
+            dst[off++] = (byte) c;
+        }
+        for (; i < len; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                dst[off++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[off++] = (byte) (0xC0 | (c >> 6));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(chars[i + 1])) {
+                int cp = Character.toCodePoint(c, chars[++i]);
+                dst[off++] = (byte) (0xF0 | (cp >> 18));
+                dst[off++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[off++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                dst[off++] = (byte) '?';
+            } else {
+                dst[off++] = (byte) (0xE0 | (c >> 12));
+                dst[off++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return off;
+    }
+
+    /**
+     * 将 s 逐字节编码写入 out，用于不能直接访问底层数组的 {@link SerialSink}
+     */
+    static void encode(String s, SerialSink out) {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.writeByte((byte) c);
+            } else if (c < 0x800) {
+                out.writeByte((byte) (0xC0 | (c >> 6)));
+                out.writeByte((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out.writeByte((byte) (0xF0 | (cp >> 18)));
+                out.writeByte((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.writeByte((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.writeByte((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.writeByte((byte) '?');
+            } else {
+                out.writeByte((byte) (0xE0 | (c >> 12)));
+                out.writeByte((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.writeByte((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * 解码 src[off, off + len)，chars 为长度不小于 len 的临时数组。
+     * 遇到不合法的 UTF-8 序列时交给 JDK 处理，以保持相同的替换规则
+     */
+    static String decode(byte[] src, int off, int len, char[] chars) {
+        int end = off + len;
+        int i = off;
+        int n = 0;
+        // ASCII 前缀，每个字节即一个字符
+        for (byte b; i < end && (b = src[i]) >= 0; i++) {
+            chars[n++] = (char) b;
+        }
+        while (i < end) {
+            int b = src[i];
+            if (b >= 0) {
+                chars[n++] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0 && i + 1 < end && isContinuation(src[i + 1])) {
+                int c = ((b & 0x1F) << 6) | (src[i + 1] & 0x3F);
+                if (c < 0x80) {
+                    return malformed(src, off, len);
+                }
+                chars[n++] = (char) c;
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0 && i + 2 < end && isContinuation(src[i + 1]) && isContinuation(src[i + 2])) {
+                int c = ((b & 0x0F) << 12) | ((src[i + 1] & 0x3F) << 6) | (src[i + 2] & 0x3F);
+                if (c < 0x800 || Character.isSurrogate((char) c)) {
+                    return malformed(src, off, len);
+                }
+                chars[n++] = (char) c;
+                i += 3;
+            } else if ((b & 0xF8) == 0xF0 && i + 3 < end && isContinuation(src[i + 1]) && isContinuation(src[i + 2])
+                    && isContinuation(src[i + 3])) {
+                int cp = ((b & 0x07) << 18) | ((src[i + 1] & 0x3F) << 12) | ((src[i + 2] & 0x3F) << 6) | (src[i + 3] & 0x3F);
+                if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+                    return malformed(src, off, len);
+                }
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+                i += 4;
+            } else {
+                return malformed(src, off, len);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static String malformed(byte[] src, int off, int len) {
+        return new String(src, off, len, StandardCharsets.UTF_8);
+    }
+}
@@ -1,9 +1,18 @@
 import cn.zzu.ss.core.Bytes;
+import cn.zzu.ss.core.Deserializer;
+import cn.zzu.ss.core.DirectBytes;
+import cn.zzu.ss.core.Serializer;
 import org.junit.jupiter.api.Test;
+import test.Man;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class BytesTest {
 
     @Test
@@ -69,4 +78,99 @@ public class BytesTest {
         Bytes bytes2 = Bytes.newBytes();
         System.out.println(bytes1.getClass() == bytes2.getClass());
     }
+
+    @Test
+    void direct_bytes() throws IOException {
+        DirectBytes bytes = Bytes.newDirectBytes();
+        bytes.writeInt(100);
+        bytes.writeString("UTF-8 是一种变长编码");
+        for (int i = 0; i < 10_000; i++) {
+            bytes.writeLong(i);
+        }
+        System.out.println(bytes);
+
+        assertEquals(100, bytes.readInt());
+        assertEquals("UTF-8 是一种变长编码", bytes.readString());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, bytes.readLong());
+        }
+
+        bytes.clear();
+        assertEquals(4096, bytes.capacity());
+        assertTrue(bytes.release());
+        assertThrows(IllegalStateException.class, bytes::readInt);
+        assertThrows(IllegalStateException.class, ()->bytes.read(new byte[1], 0, 1));
+    }
+
+    @Test
+    void direct_serialize() {
+        Man man = new Man();
+        man.setName("Tom");
+        man.setAge(22);
+
+        DirectBytes bytes = Bytes.newDirectBytes();
+        Serializer serializer = new Serializer();
+        serializer.redirect(bytes);
+        serializer.writeObject(man);
+
+        Man dm = (Man) new Deserializer(bytes).readObject();
+        assertEquals("Tom", dm.getName());
+        bytes.release();
+    }
+
+    @Test
+    void bulk_arrays() {
+        int[] ints = {1, -2, 0x01020304};
+        double[] doubles = new double[100_000];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = i / 7d;
+        }
+
+        Bytes heap = Bytes.newBytes();
+        heap.writeInts(ints);
+        assertEquals(0x01, heap.getData()[9]);  // 大端序
+        assertArrayEquals(ints, heap.readInts());
+
+        DirectBytes direct = Bytes.newDirectBytes();
+        Serializer serializer = new Serializer();
+        serializer.redirect(direct);
+        serializer.writeObject(ints);
+        serializer.writeObject(doubles);
+
+        Deserializer deserializer = new Deserializer(direct);
+        assertArrayEquals(ints, (int[]) deserializer.readObject());
+        assertArrayEquals(doubles, (double[]) deserializer.readObject());
+        direct.release();
+    }
+
+    @Test
+    void utf_8_encoding() throws IOException {
+        String[] samples = {"", "ascii", "\u00e9t\u00e9", "你好，UTF-8", "\uD83D\uDE00 emoji", "lone \uD800 high", "\uDC00 low", "\uFFFF"};
+        for (String s : samples) {
+            byte[] expected = s.getBytes("UTF-8");
+
+            Bytes heap = Bytes.newBytes();
+            heap.writeString(s);
+            assertEquals(expected.length, heap.readLen());
+            byte[] actual = new byte[expected.length];
+            heap.read(actual, 0, actual.length);
+            assertArrayEquals(expected, actual);
+
+            // DirectBytes 使用 SerialSink 的默认实现
+            DirectBytes direct = Bytes.newDirectBytes();
+            direct.writeString(s);
+            assertEquals(new String(expected, "UTF-8"), direct.readString());
+            direct.release();
+        }
+
+        // 解码与 JDK 一致，包括不合法的序列
+        byte[][] encoded = {"ascii".getBytes("UTF-8"), "\u00e9t\u00e9 你好 \uD83D\uDE00".getBytes("UTF-8"),
+                {(byte) 0xC0, (byte) 0x80}, {'a', (byte) 0xE4, (byte) 0xBD}, {(byte) 0xED, (byte) 0xA0, (byte) 0x80},
+                {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80}, {(byte) 0x80, 'b'}, {(byte) 0xFF}};
+        for (byte[] e : encoded) {
+            Bytes heap = Bytes.newBytes();
+            heap.writeBytes(e);
+            assertEquals(new String(e, "UTF-8"), heap.readString());
+        }
+    }
 }
@@ -1,8 +1,20 @@
 import cn.zzu.rpc.ChannelPool;
+import cn.zzu.rpc.DefaultInvocationHandler;
 import cn.zzu.rpc.Invocation;
+import cn.zzu.rpc.InvocationFuture;
 import cn.zzu.rpc.InvocationFutureRepo;
+import cn.zzu.rpc.Invoker;
+import cn.zzu.rpc.RpcException;
 import cn.zzu.rpc.RpcRegistry;
+import cn.zzu.rpc.RpcTimeoutException;
+import cn.zzu.rpc.InvokeTimeout;
+import cn.zzu.rpc.netty.InvocationClientHandler;
+import cn.zzu.rpc.netty.InvocationServerHandler;
 import cn.zzu.rpc.netty.Packet;
+import cn.zzu.rpc.netty.PacketType;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.jupiter.api.Test;
 import test.AnimalAction;
 import test.Man;
@@ -10,33 +22,37 @@ import test.Man;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class RpcTest {
     @Test
-    void blocking_queue() throws NoSuchMethodException, InterruptedException {
-        Method method = AnimalAction.class.getDeclaredMethod("learn", Object.class);
-        Invocation invocation = new Invocation("action", AnimalAction.class, method, new Object[]{new Man()});
-
-        InvocationFutureRepo repo = InvocationFutureRepo.getInstance();
+    void blocking_queue() throws InterruptedException {
+        InvocationFutureRepo repo = InvocationFutureRepo.of(new EmbeddedChannel(new InvocationClientHandler()));
+        InvocationFuture future = repo.put(1000);
+        int invocationID = future.getInvocationID();
 
         Thread t1 = new Thread(()->{
-            repo.put(invocation.getInvocationID());
-
-            System.out.println(repo.get(invocation.getInvocationID()).get());
+            System.out.println(future.get());
         });
         Thread t2 = new Thread(()->{
-            repo.get(invocation.getInvocationID()).set(666);
+            repo.remove(invocationID).set(666);
         });
 
         t1.start();
-        Thread.sleep(2000);
+        Thread.sleep(500);
         t2.start();
+        t1.join();
 
-        System.out.println(repo);
-
+        assertEquals(null, repo.remove(invocationID));
     }
 
     @Test
@@ -97,4 +113,203 @@ public class RpcTest {
 
         System.out.println(pool.syncGetChannel());
     }
+
+    interface AsyncEcho {
+        CompletableFuture<Object> echo(Object o);
+    }
+
+    @Test
+    void async_invocation() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new InvocationClientHandler());
+        AsyncEcho echo = (AsyncEcho) Proxy.newProxyInstance(AsyncEcho.class.getClassLoader(),
+                new Class[]{AsyncEcho.class}, new DefaultInvocationHandler("echo", AsyncEcho.class, client));
+
+        // 服务端的实现同样返回 CompletableFuture，完成时才写回结果
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        Invoker<AsyncEcho> invoker = new Invoker<>("echo", AsyncEcho.class, o->pending.thenApply(v->o), new String[]{"echo"});
+        EmbeddedChannel server = new EmbeddedChannel(new InvocationServerHandler(Collections.<String, Invoker<?>>singletonMap("echo", invoker)));
+
+        CompletableFuture<Object> first = echo.echo("first");
+        CompletableFuture<Object> second = echo.echo("second");
+        // 请求由 event loop 合并写出
+        client.runPendingTasks();
+        server.writeInbound(client.readOutbound());
+        server.writeInbound(client.readOutbound());
+        assertEquals(null, server.readOutbound());
+        pending.complete(null);
+
+        Object resp;
+        while ((resp = server.readOutbound()) != null) {
+            client.writeInbound(resp);
+        }
+        assertEquals("first", first.get(1, TimeUnit.SECONDS));
+        assertEquals("second", second.get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> missing = echo.echo("x");
+        client.runPendingTasks();
+        Packet req = (Packet) client.readOutbound();
+        client.writeInbound(Packet.missService(req.getInvocationID(), "echo"));
+        assertTrue(missing.isCompletedExceptionally());
+    }
+
+    @Test
+    void pending_invocations_fail_on_close() {
+        EmbeddedChannel client = new EmbeddedChannel(new InvocationClientHandler());
+        AsyncEcho echo = (AsyncEcho) Proxy.newProxyInstance(AsyncEcho.class.getClassLoader(),
+                new Class[]{AsyncEcho.class}, new DefaultInvocationHandler("echo", AsyncEcho.class, client));
+
+        CompletableFuture<Object> answered = echo.echo("answered");
+        client.runPendingTasks();
+        Packet req = (Packet) client.readOutbound();
+        CompletableFuture<Object> pending = echo.echo("pending");
+
+        // 调用号按连接递增，迟到或重复的结果被丢弃
+        client.writeInbound(Packet.result(req.getInvocationID(), "answered"));
+        client.writeInbound(Packet.result(req.getInvocationID(), "again"));
+        assertEquals("answered", answered.getNow(null));
+        assertTrue(!pending.isDone());
+
+        client.close();
+        assertTrue(pending.isCompletedExceptionally());
+    }
+
+    @Test
+    void pending_ring_grows() {
+        EmbeddedChannel client = new EmbeddedChannel(new InvocationClientHandler());
+        InvocationFutureRepo repo = InvocationFutureRepo.of(client, 10000);
+        AsyncEcho echo = (AsyncEcho) Proxy.newProxyInstance(AsyncEcho.class.getClassLoader(),
+                new Class[]{AsyncEcho.class}, new DefaultInvocationHandler("echo", AsyncEcho.class, client));
+
+        // 环从 4096 个槽位加倍到上限 16384
+        List<InvocationFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 16384; i++) {
+            futures.add(repo.put(60_000));
+        }
+        assertThrows(RpcException.class, ()->repo.put(60_000));
+        // 达到上限时异步调用不抛出异常，由 CompletableFuture 给出失败
+        CompletableFuture<Object> rejected = echo.echo("x");
+        assertTrue(rejected.isCompletedExceptionally());
+
+        // 扩容前后登记的调用都能按调用号取出
+        for (InvocationFuture f : futures) {
+            assertTrue(f == repo.remove(f.getInvocationID()));
+        }
+        assertEquals(null, repo.remove(futures.get(0).getInvocationID()));
+
+        CompletableFuture<Object> accepted = echo.echo("y");
+        client.runPendingTasks();
+        Packet req = (Packet) client.readOutbound();
+        client.writeInbound(Packet.result(req.getInvocationID(), "y"));
+        assertEquals("y", accepted.getNow(null));
+        for (InvocationFuture f : futures) {
+            f.cancel();
+        }
+    }
+
+    interface SlowEcho {
+        @InvokeTimeout(50)
+        Object echo(Object o);
+
+        @InvokeTimeout(50)
+        CompletableFuture<Object> echoAsync(Object o);
+    }
+
+    @Test
+    void invocation_timeout() {
+        EmbeddedChannel client = new EmbeddedChannel(new InvocationClientHandler());
+        SlowEcho echo = (SlowEcho) Proxy.newProxyInstance(SlowEcho.class.getClassLoader(),
+                new Class[]{SlowEcho.class}, new DefaultInvocationHandler("echo", SlowEcho.class, client));
+
+        assertThrows(RpcTimeoutException.class, ()->echo.echo("late"));
+        // 超时后到达的结果被丢弃
+        client.runPendingTasks();
+        Packet req = (Packet) client.readOutbound();
+        client.writeInbound(Packet.result(req.getInvocationID(), "late"));
+
+        CompletableFuture<Object> async = echo.echoAsync("late");
+        ExecutionException e = assertThrows(ExecutionException.class, ()->async.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RpcTimeoutException);
+    }
+
+    @Test
+    void coalesced_flush() {
+        AtomicInteger clientFlushes = new AtomicInteger();
+        AtomicInteger serverFlushes = new AtomicInteger();
+        EmbeddedChannel client = new EmbeddedChannel(flushCounter(clientFlushes), new InvocationClientHandler());
+        AsyncEcho echo = (AsyncEcho) Proxy.newProxyInstance(AsyncEcho.class.getClassLoader(),
+                new Class[]{AsyncEcho.class}, new DefaultInvocationHandler("echo", AsyncEcho.class, client));
+        Invoker<AsyncEcho> invoker = new Invoker<>("echo", AsyncEcho.class, CompletableFuture::completedFuture, new String[]{"echo"});
+        EmbeddedChannel server = new EmbeddedChannel(flushCounter(serverFlushes),
+                new InvocationServerHandler(Collections.<String, Invoker<?>>singletonMap("echo", invoker)));
+
+        List<CompletableFuture<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(echo.echo(i));
+        }
+        client.runPendingTasks();
+        assertEquals(1, clientFlushes.get());
+        assertEquals(10, client.outboundMessages().size());
+
+        server.writeInbound(client.outboundMessages().toArray());
+        assertEquals(1, serverFlushes.get());
+        client.writeInbound(server.outboundMessages().toArray());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, calls.get(i).getNow(null));
+        }
+    }
+
+    private static ChannelOutboundHandlerAdapter flushCounter(AtomicInteger flushes) {
+        return new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(final ChannelHandlerContext ctx) throws Exception {
+                flushes.incrementAndGet();
+                super.flush(ctx);
+            }
+        };
+    }
+
+    interface Quote {
+        Object price(Object o);
+
+        Object report(Object o);
+    }
+
+    @Test
+    void business_executor() throws NoSuchMethodException {
+        Quote quote = new Quote() {
+            @Override
+            public Object price(final Object o) {
+                return "price " + o;
+            }
+
+            @Override
+            public Object report(final Object o) {
+                return "report " + o;
+            }
+        };
+        Invoker<Quote> invoker = new Invoker<>("quote", Quote.class, quote, new String[]{"price", "report"});
+        List<Runnable> business = new ArrayList<>();
+        invoker.setExecutor(business::add);
+        invoker.setExecutor("price", null);
+        EmbeddedChannel server = new EmbeddedChannel(new InvocationServerHandler(Collections.<String, Invoker<?>>singletonMap("quote", invoker)));
+        Method price = Quote.class.getMethod("price", Object.class);
+        Method report = Quote.class.getMethod("report", Object.class);
+
+        // price 在 event loop 线程中执行，report 交给业务线程
+        server.writeInbound(Packet.invocation(1, new Invocation("quote", Quote.class, report, new Object[]{"a"})),
+                Packet.invocation(2, new Invocation("quote", Quote.class, price, new Object[]{"b"})));
+        assertEquals("price b", ((Packet) server.readOutbound()).getBody());
+        assertEquals(null, server.readOutbound());
+        assertEquals(1, business.size());
+        business.get(0).run();
+        assertEquals("report a", ((Packet) server.readOutbound()).getBody());
+
+        // 业务线程池的队列已满
+        invoker.setExecutor("report", r->{
+            throw new RejectedExecutionException();
+        });
+        server.writeInbound(Packet.invocation(3, new Invocation("quote", Quote.class, report, new Object[]{"c"})));
+        assertEquals(PacketType.INVOKE_FAILED.value(), ((Packet) server.readOutbound()).getType());
+    }
 }
+
@@ -1,15 +1,36 @@
 import cn.zzu.rpc.Invocation;
 import cn.zzu.rpc.netty.Packet;
 import cn.zzu.ss.core.Deserializer;
+import cn.zzu.ss.core.ObjectView;
+import cn.zzu.ss.core.SerializeException;
 import cn.zzu.ss.core.Serializer;
+import cn.zzu.ss.core.SessionDictionary;
+import cn.zzu.ss.core.SnapshotReader;
+import cn.zzu.ss.core.SnapshotWriter;
 import test.*;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SSTest {
 
@@ -237,6 +258,96 @@ public class SSTest {
         System.out.println(deserializer.readObject());
     }
 
+    @Test
+    void class_ids_beyond_flags() {
+        List<Class<?>> classes = topLevelClasses(200);
+        for (boolean compact : new boolean[]{false, true}) {
+            // 先写出 n 个类，使集合与映射中的元素类的 id 依次取遍标志字节的值
+            for (int n = 0; n <= classes.size(); n++) {
+                Serializer serializer = new Serializer();
+                serializer.setCompact(compact);
+                for (int i = 0; i < n; i++) {
+                    serializer.writeObject(classes.get(i));
+                }
+                Man man = new Man();
+                man.setName("m" + n);
+                List<Man> list = Arrays.asList(new Man(), man);
+                Map<Man, Man> map = Collections.singletonMap(new Man(), new Man());
+                serializer.writeObject(man);
+                serializer.writeObject(new ArrayList<>(list));
+                serializer.writeObject(new HashMap<>(map));
+
+                Deserializer deserializer = new Deserializer(serializer.getSerialData());
+                for (int i = 0; i < n; i++) {
+                    assertSame(classes.get(i), deserializer.readObject());
+                }
+                assertEquals(man.toString(), deserializer.readObject().toString());
+                assertEquals(list.toString(), deserializer.readObject().toString());
+                assertEquals(map.toString(), deserializer.readObject().toString());
+            }
+        }
+    }
+
+    @Test
+    void large_session_dictionary() {
+        List<Class<?>> classes = topLevelClasses(200);
+        // 字典中 Man 之前有 n 个类，其 id 依次取遍标志字节的值；首次引用字典中的类也只写 id
+        for (int n = 0; n <= classes.size(); n++) {
+            List<Class<?>> shared = new ArrayList<>(classes.subList(0, n));
+            shared.add(Man.class);
+            SessionDictionary dictionary = SessionDictionary.of(shared, Collections.singletonList("m"));
+            Serializer serializer = new Serializer();
+            serializer.share(dictionary);
+            List<Man> list = Arrays.asList(new Man(), new Man());
+            Map<Man, Man> map = Collections.singletonMap(new Man(), new Man());
+            serializer.writeObject(new ArrayList<>(list));
+            serializer.writeObject(new HashMap<>(map));
+
+            Deserializer deserializer = new Deserializer(serializer.getSerialData());
+            deserializer.share(SessionDictionary.resolve(dictionary.names()));
+            assertEquals(list.toString(), deserializer.readObject().toString());
+            assertEquals(map.toString(), deserializer.readObject().toString());
+        }
+    }
+
+    /*
+     * 从几个常用类出发，沿公有方法的参数与返回类型收集 count 个可按名称加载的顶层类
+     */
+    private static List<Class<?>> topLevelClasses(int count) {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>(Arrays.asList(String.class, Thread.class, Collections.class, Files.class));
+        while (classes.size() < count && !queue.isEmpty()) {
+            Class<?> cl = queue.poll();
+            if (cl.isArray() || cl.isPrimitive() || cl.getEnclosingClass() != null || !classes.add(cl)) {
+                continue;
+            }
+            for (Method m : cl.getMethods()) {
+                queue.add(m.getReturnType());
+                queue.addAll(Arrays.asList(m.getParameterTypes()));
+            }
+        }
+        assertEquals(count, classes.size());
+        return new ArrayList<>(classes);
+    }
+
+    @Test
+    void collection_round_trip() {
+        List<Object> list = new ArrayList<>(Arrays.asList(1, 2, "a", "b", "a", String.class, Integer.class, null, new Flat(1), new Flat(2)));
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, new Flat(i));
+        }
+        map.put(null, "null key");
+        map.put("null value", null);
+
+        Serializer serializer = new Serializer();
+        serializer.writeObject(list);
+        serializer.writeObject(map);
+        Deserializer deserializer = new Deserializer(serializer.getSerialData());
+        assertEquals(list, deserializer.readObject());
+        assertEquals(map, deserializer.readObject());
+    }
+
     @Test
     void array_test() {
         int[] ints = {1, 2, 3, 4};
@@ -252,6 +363,55 @@ public class SSTest {
         System.out.println(deserializer.readObject());
     }
 
+    @Test
+    void primitive_arrays() {
+        Object[] arrays = {new boolean[]{true, false}, new byte[]{1, -2}, new char[]{'a', '中'}, new short[]{1, -2},
+                new int[]{1, -2, Integer.MAX_VALUE}, new float[]{1.5f, -2}, new long[]{1, -2, Long.MIN_VALUE},
+                new double[]{1.5, -2, Double.NaN}};
+        Serializer serializer = new Serializer();
+        for (Object array : arrays) {
+            serializer.writeObject(array);
+        }
+        Deserializer deserializer = new Deserializer(serializer.getSerialData());
+        for (Object array : arrays) {
+            assertTrue(Objects.deepEquals(array, deserializer.readObject()));
+        }
+
+        // 大端序的数据在小端机器上读取时逐个元素翻转，反之亦然
+        serializer.reset();
+        serializer.writeObject(new int[]{0x01020304});
+        byte[] data = serializer.getSerialData();
+        int flag = data.length - 6;
+        data[flag] = (byte) (data[flag] == 0x64 ? 0x65 : 0x64);
+        for (int i = 0; i < 2; i++) {
+            byte b = data[flag + 1 + i];
+            data[flag + 1 + i] = data[flag + 4 - i];
+            data[flag + 4 - i] = b;
+        }
+        assertArrayEquals(new int[]{0x01020304}, (int[]) new Deserializer(data).readObject());
+    }
+
+    @Test
+    void large_double_array() {
+        double[] doubles = new double[10_000_000];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = i / 7d;
+        }
+        Serializer serializer = new Serializer();
+        Deserializer deserializer = new Deserializer();
+        for (int round = 0; round < 3; round++) {
+            serializer.reset();
+            long start = System.nanoTime();
+            serializer.writeObject(doubles);
+            long mid = System.nanoTime();
+            byte[] data = serializer.getSerialData();
+            Object res = deserializer.reuse(data, 0, data.length).readObject();
+            long end = System.nanoTime();
+            assertArrayEquals(doubles, (double[]) res);
+            System.out.println("double[10M] write(ms):\t" + (mid - start) / 1_000_000 + ", read(ms):\t" + (end - mid) / 1_000_000);
+        }
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     void set_test() {
@@ -368,11 +528,603 @@ public class SSTest {
     void packet() throws NoSuchMethodException {
         Method method = AnimalAction.class.getDeclaredMethod("learn", Object.class);
         Invocation invocation = new Invocation("action", AnimalAction.class, method, new Object[] {new Man()});
-        Packet p = Packet.missService(invocation.getInvocationID(), invocation.getIdentifier());
+        Packet p = Packet.missService(1, invocation.getIdentifier());
 
         Serializer serializer = new Serializer();
         serializer.writeObject(p);
         Deserializer deserializer = new Deserializer(serializer.getSerialData());
-        System.out.println(deserializer.readObject());
+        Packet read = (Packet) deserializer.readObject();
+        System.out.println(read);
+        assertEquals(1, read.getInvocationID());
+    }
+
+    @Test
+    void identity_handles() {
+        Family family = new Family(new Man(), new Woman());
+
+        Serializer serializer = new Serializer();
+        serializer.writeObject(family);
+        Deserializer deserializer = new Deserializer(serializer.getSerialData());
+        Family df = (Family) deserializer.readObject();
+
+        // children 与 elders 相等但不是同一个对象，不应被当作引用
+        assertNotSame(df.getChildren(), df.getElders());
+    }
+
+    @Test
+    void handle_table_scaling() {
+        for (int n = 1_000; n <= 1_000_000; n *= 10) {
+            // 前 n 个是各不相同但每 100 个相等一次的对象，后 n 个依次引用前 n 个，句柄表会多次扩容
+            List<Flat> list = new ArrayList<>(n << 1);
+            for (int i = 0; i < n; i++) {
+                list.add(new Flat(i % 100));
+            }
+            for (int i = 0; i < n; i++) {
+                list.add(list.get(i));
+            }
+
+            Serializer serializer = new Serializer();
+            long start = System.nanoTime();
+            serializer.writeObject(list);
+            long end = System.nanoTime();
+            System.out.println("nodes:\t" + n + ", time(ms):\t" + (end - start) / 1_000_000 + ", ns/node:\t" + (end - start) / n);
+
+            List<?> read = (List<?>) new Deserializer(serializer.getSerialData()).readObject();
+            assertEquals(list.size(), read.size());
+            for (int i = 0; i < n; i++) {
+                assertEquals(list.get(i), read.get(i));
+                assertSame(read.get(i), read.get(n + i));
+                if (i >= 100) {
+                    // 相等但不是同一个对象，各有自己的句柄
+                    assertNotSame(read.get(i - 100), read.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void primitive_fields() {
+        int[] seeds = {0, 1, -1, 123, Short.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (boolean compact : new boolean[]{false, true}) {
+            int length = -1;
+            for (int seed : seeds) {
+                Flat flat = new Flat(seed);
+                Serializer serializer = new Serializer();
+                serializer.setCompact(compact);
+                serializer.writeObject(flat);
+                byte[] data = serializer.getSerialData();
+                assertEquals(flat, new Deserializer(data).readObject());
+                if (!compact) {
+                    // 默认格式下基本类型字段定长，与字段的值无关
+                    assertTrue(length < 0 || length == data.length);
+                    length = data.length;
+                }
+            }
+        }
+
+        Flat flat = new Flat(123);
+        Serializer serializer = new Serializer();
+        int loop = 1_000_000;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < loop; i++) {
+                serializer.reset();
+                serializer.writeObject(flat);
+            }
+            long end = System.nanoTime();
+            System.out.println("flat dto, ns/op:\t" + (end - start) / loop);
+        }
+    }
+
+    @Test
+    void reuse_allocation() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        Man man = new Man();
+        man.setName("Tom");
+        man.setAge(22);
+        int loop = 100_000;
+
+        Serializer reused = new Serializer();
+        Deserializer reader = new Deserializer();
+        for (int i = 0; i < loop; i++) {
+            reused.reset();
+            reused.writeObject(man);
+        }
+        byte[] data = reused.getSerialData();
+
+        long start = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < loop; i++) {
+            Serializer serializer = new Serializer();
+            serializer.writeObject(man);
+            new Deserializer(data).readObject();
+        }
+        long fresh = bean.getThreadAllocatedBytes(tid) - start;
+
+        start = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < loop; i++) {
+            reused.reset();
+            reused.writeObject(man);
+            reader.reuse(data, 0, data.length).readObject();
+        }
+        long pooled = bean.getThreadAllocatedBytes(tid) - start;
+
+        System.out.println("bytes/op fresh:\t" + fresh / loop + ", bytes/op reused:\t" + pooled / loop);
+        assertTrue(pooled < fresh);
+    }
+
+    @Test
+    void compact_profile() {
+        Man man = new Man();
+        man.setName("Tom");
+        man.setAge(22);
+        man.setStrength(80);
+        List<Object> list = new ArrayList<>();
+        list.add(new Flat(-7));
+        list.add(man);
+        for (int i = 0; i < 20; i++) {
+            list.add(i);
+            list.add((long) -i);
+        }
+        list.add(true);
+        list.add((short) -3);
+        list.add('x');
+        list.add(1.5d);
+
+        Serializer serializer = new Serializer();
+        serializer.writeObject(list);
+        byte[] plain = serializer.getSerialData();
+
+        serializer.reset();
+        serializer.setCompact(true);
+        serializer.writeObject(list);
+        byte[] compact = serializer.getSerialData();
+
+        assertEquals(list.toString(), new Deserializer(compact).readObject().toString());
+        System.out.println("default:\t" + plain.length + " bytes, compact:\t" + compact.length + " bytes");
+        assertTrue(compact.length < plain.length);
+    }
+
+    @Test
+    void write_allocation() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        Man man = new Man();
+        man.setName("Tom");
+        man.setAge(22);
+        Object[] objects = {new Flat(42), man};
+        int loop = 100_000;
+
+        Serializer serializer = new Serializer();
+        for (Object o : objects) {
+            for (boolean compact : new boolean[]{false, true}) {
+                serializer.reset();
+                serializer.setCompact(compact);
+                // 预热：缓冲区增长、类描述符与生成的读写器都在此完成
+                for (int i = 0; i < loop; i++) {
+                    serializer.reset();
+                    serializer.writeObject(o);
+                }
+                long start = bean.getThreadAllocatedBytes(tid);
+                for (int i = 0; i < loop; i++) {
+                    serializer.reset();
+                    serializer.writeObject(o);
+                }
+                long allocated = bean.getThreadAllocatedBytes(tid) - start;
+                System.out.println(o.getClass().getSimpleName() + " compact=" + compact + ", bytes/op:\t" + (double) allocated / loop);
+                // 按整数平均，JIT 等偶发的分配不足以达到每次 1 字节
+                assertEquals(0, allocated / loop);
+            }
+        }
+    }
+
+    @Test
+    void stream_serialize() throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Man man = new Man();
+            man.setName("Tom-" + i);
+            man.setAge(i % 90);
+            list.add(man);
+        }
+        double[] doubles = new double[100_000];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = i / 7d;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("流式写出 stream ");
+        }
+        list.add(sb.toString());
+
+        Serializer serializer = new Serializer();
+        serializer.writeObject(list);
+        serializer.writeObject(doubles);
+        byte[] expected = serializer.getSerialData();
+
+        // 缓冲区远小于数据量，每个对象都会跨越多次写出
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        serializer.reset();
+        serializer.streamTo(os, 256);
+        serializer.writeObject(list);
+        serializer.writeObject(doubles);
+        serializer.flush();
+        assertArrayEquals(expected, os.toByteArray());
+
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        serializer.reset();
+        serializer.streamTo(Channels.newChannel(channelOut), 256);
+        serializer.writeObject(list);
+        serializer.writeObject(doubles);
+        serializer.flush();
+        assertArrayEquals(expected, channelOut.toByteArray());
+
+        Deserializer deserializer = new Deserializer(os.toByteArray());
+        assertEquals(list.size(), ((List<?>) deserializer.readObject()).size());
+        assertArrayEquals(doubles, (double[]) deserializer.readObject());
+        System.out.println("streamed:\t" + expected.length + " bytes");
+    }
+
+    @Test
+    void stream_deserialize() throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Man man = new Man();
+            man.setName("Tom-" + i);
+            man.setAge(i % 90);
+            list.add(man);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("流式读取 stream ");
+        }
+        list.add(sb.toString());
+        long[] longs = new long[100_000];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = i * 31L;
+        }
+        Serializer serializer = new Serializer();
+        serializer.writeObject(list);
+        serializer.writeObject(longs);
+        serializer.writeObject(sb.toString());
+        byte[] data = serializer.getSerialData();
+
+        // 每次最多返回 7 个字节，值与数组元素都会被截断在两次读取之间
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        Deserializer[] deserializers = {
+                new Deserializer(new ByteArrayInputStream(data), 256),
+                new Deserializer(trickle, 256),
+                new Deserializer(Channels.newChannel(new ByteArrayInputStream(data)), 256)
+        };
+        for (Deserializer deserializer : deserializers) {
+            assertEquals(list.toString(), deserializer.readObject().toString());
+            assertArrayEquals(longs, (long[]) deserializer.readObject());
+            assertEquals(sb.toString(), deserializer.readObject());
+            assertEquals(null, deserializer.readObject());
+        }
+    }
+
+    @Test
+    void snapshot_file() throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Man man = new Man();
+            man.setName("快照-" + i);
+            man.setAge(i % 90);
+            list.add(man);
+        }
+        double[] doubles = new double[100_000];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = i / 7d;
+        }
+        Path file = Files.createTempFile("ss", ".snapshot");
+        try {
+            // 映射段很小，值、字符串与数组元素都会跨越段的边界
+            try (SnapshotWriter writer = new SnapshotWriter(file, 1000)) {
+                writer.writeObject(list);
+                writer.writeObject(doubles);
+                writer.writeObject(list);
+            }
+            Serializer serializer = new Serializer();
+            serializer.writeObject(list);
+            serializer.writeObject(doubles);
+            serializer.writeObject(list);
+            assertArrayEquals(serializer.getSerialData(), Files.readAllBytes(file));
+
+            for (int regionSize : new int[]{999, 1 << 20}) {
+                try (SnapshotReader reader = new SnapshotReader(file, regionSize)) {
+                    Object first = reader.readObject();
+                    assertEquals(list.toString(), first.toString());
+                    assertArrayEquals(doubles, (double[]) reader.readObject());
+                    assertTrue(first == reader.readObject());
+                    assertEquals(null, reader.readObject());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void projected_read() throws IOException {
+        Wide wide = new Wide(2000);
+        Serializer serializer = new Serializer();
+        serializer.setSkippable(true);
+        serializer.writeObject(wide);
+        byte[] skippable = serializer.getSerialData();
+        serializer.reset();
+        serializer.setSkippable(false);
+        serializer.writeObject(wide);
+        byte[] plain = serializer.getSerialData();
+
+        Wide full = new Deserializer(skippable).readObject(Wide.class);
+        assertEquals(wide.getMembers().toString(), full.getMembers().toString());
+        assertEquals(wide.getScores(), full.getScores());
+        assertTrue(full.getDeputy() == full.getMembers().get(1000));
+
+        for (byte[] data : new byte[][]{skippable, plain}) {
+            Wide part = new Deserializer(data).readObject(Wide.class, "title", "owner.name");
+            assertEquals(wide.getId(), part.getId());
+            assertEquals(wide.getTitle(), part.getTitle());
+            assertEquals("owner", part.getOwner().getName());
+            assertEquals(70, part.getOwner().getStrength());
+            assertEquals(null, part.getMembers());
+            assertEquals(null, part.getScores());
+            assertEquals(null, part.getHistory());
+
+            // deputy 先于 members 写出，members 中的该元素引用的是被跳过的 deputy
+            Wide members = new Deserializer(data).readObject(Wide.class, "members");
+            assertEquals(wide.getMembers().toString(), members.getMembers().toString());
+            assertEquals(null, members.getDeputy());
+        }
+
+        // 流式读取不能回退，不需要的值照常解码后丢弃，引用被跳过的值同样可以读出
+        Wide streamed = new Deserializer(new ByteArrayInputStream(skippable), 128).readObject(Wide.class, "members");
+        assertEquals(wide.getMembers().toString(), streamed.getMembers().toString());
+        assertEquals(null, streamed.getDeputy());
+        // 快照以 long 的位置回到被跳过的值
+        Path file = Files.createTempFile("ss", ".snapshot");
+        try {
+            Files.write(file, skippable);
+            try (SnapshotReader reader = new SnapshotReader(file, 999)) {
+                Wide mapped = reader.readObject(Wide.class, "members");
+                assertEquals(wide.getMembers().toString(), mapped.getMembers().toString());
+                assertEquals(null, mapped.getDeputy());
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        Deserializer deserializer = new Deserializer();
+        int loop = 200;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < loop; i++) {
+                deserializer.reuse(skippable, 0, skippable.length).readObject();
+            }
+            long mid = System.nanoTime();
+            for (int i = 0; i < loop; i++) {
+                deserializer.reuse(skippable, 0, skippable.length).readObject(Wide.class, "title", "owner.name");
+            }
+            long end = System.nanoTime();
+            System.out.println("full(us):\t" + (mid - start) / loop / 1000 + ", projected(us):\t" + (end - mid) / loop / 1000);
+        }
+    }
+
+    @Test
+    void object_view() {
+        Serializer serializer = new Serializer();
+        serializer.setIndexed(true);
+        Flat flat = new Flat(7);
+        serializer.writeObject(flat);
+        byte[] data = serializer.getSerialData();
+        assertEquals(flat, new Deserializer(data).readObject());
+        ObjectView view = ObjectView.of(data);
+        assertEquals(Flat.class, view.type());
+        assertEquals(flat.toString(), "Flat{" + "z=" + view.getBoolean("z") + ", b=" + view.getByte("b") + ", c="
+                + view.getChar("c") + ", s=" + view.getShort("s") + ", i=" + view.getInt("i") + ", f="
+                + view.getFloat("f") + ", j=" + view.getLong("j") + ", d=" + view.getDouble("d") + '}');
+
+        // 父类的字段经由子类偏移表的最后一项定位
+        Man man = new Man();
+        man.setName("view");
+        man.setAge(33);
+        man.setStrength(12);
+        serializer.reset();
+        serializer.writeObject(man);
+        view = ObjectView.of(serializer.getSerialData());
+        assertEquals("view", view.getString("name"));
+        assertEquals(33, view.getInt("age"));
+        assertEquals(12, view.getInt("strength"));
+
+        Wide wide = new Wide(2000);
+        for (boolean skippable : new boolean[]{false, true}) {
+            serializer.reset();
+            serializer.setSkippable(skippable);
+            serializer.writeObject(wide);
+            data = serializer.getSerialData();
+            Wide full = (Wide) new Deserializer(data).readObject();
+            assertEquals(wide.getMembers().toString(), full.getMembers().toString());
+            view = ObjectView.of(data);
+            assertEquals(wide.getId(), view.getLong("id"));
+            assertEquals(wide.getTitle(), view.getString("title"));
+            assertEquals(false, view.isNull("owner"));
+        }
+        serializer.reset();
+        serializer.setSkippable(false);
+        serializer.writeObject(new Wide());
+        view = ObjectView.of(serializer.getSerialData());
+        assertEquals(null, view.getString("title"));
+        assertTrue(view.isNull("members"));
+
+        Deserializer deserializer = new Deserializer();
+        int loop = 200;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < loop; i++) {
+                deserializer.reuse(data, 0, data.length).readObject();
+            }
+            long mid = System.nanoTime();
+            for (int i = 0; i < loop; i++) {
+                view = ObjectView.of(data);
+                view.getLong("id");
+                view.getString("title");
+            }
+            long end = System.nanoTime();
+            System.out.println("full(us):\t" + (mid - start) / loop / 1000 + ", view(ns):\t" + (end - mid) / loop);
+        }
+    }
+
+    @Test
+    void parallel_serialize() {
+        List<Object> list = new ArrayList<>();
+        Man[] men = new Man[5000];
+        for (int i = 0; i < men.length; i++) {
+            Man m = new Man();
+            m.setName("m" + i);
+            m.setAge(i % 90);
+            m.setStrength(i);
+            men[i] = m;
+            list.add(i % 7 == 0 ? null : i % 5 == 0 ? "s" + i : m);
+        }
+        Wide wide = new Wide(3000);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Serializer serializer = new Serializer();
+        serializer.setParallel(pool, 256);
+        serializer.writeObject(list);
+        serializer.writeObject(men);
+        serializer.writeObject(wide);
+        byte[] data = serializer.getSerialData();
+
+        Deserializer deserializer = new Deserializer(data);
+        assertEquals(list.toString(), deserializer.readObject().toString());
+        assertEquals(Arrays.toString(men), Arrays.toString((Man[]) deserializer.readObject()));
+        Wide read = (Wide) deserializer.readObject();
+        assertEquals(wide.getMembers().toString(), read.getMembers().toString());
+        assertEquals(wide.getScores(), read.getScores());
+        // deputy 与 members 中的元素分属分段内外，读出的是两个相等的对象
+        assertEquals(wide.getDeputy().toString(), read.getDeputy().toString());
+        assertNotSame(read.getDeputy(), read.getMembers().get(1500));
+
+        // 小于分段大小的集合照常写出
+        serializer.reset();
+        serializer.writeObject(wide.getMembers().subList(0, 100));
+        byte[] small = serializer.getSerialData();
+        serializer.reset();
+        serializer.setParallel(null, 0);
+        serializer.writeObject(wide.getMembers().subList(0, 100));
+        assertArrayEquals(serializer.getSerialData(), small);
+
+        List<Man> big = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            big.add(men[i % men.length]);
+        }
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads <<= 1) {
+            ForkJoinPool p = new ForkJoinPool(threads);
+            serializer.reset();
+            serializer.setParallel(p, 4096);
+            long start = System.nanoTime();
+            serializer.writeObject(big);
+            System.out.println("threads: " + threads + ", parallel(ms):\t" + (System.nanoTime() - start) / 1000000);
+            p.shutdown();
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void parallel_cycle() {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add("s" + i);
+        }
+        list.add(list);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Serializer serializer = new Serializer();
+        serializer.setParallel(pool, 100);
+        // 分段中的元素无法引用外层的 list，不能无限递归下去
+        assertThrows(SerializeException.class, () -> serializer.writeObject(list));
+
+        // 不经过分段容器的环照常写出
+        serializer.reset();
+        list.remove(list.size() - 1);
+        Map<String, Object> map = new HashMap<>();
+        map.put("self", map);
+        serializer.writeObject(map);
+        serializer.writeObject(list);
+        Deserializer deserializer = new Deserializer(serializer.getSerialData());
+        Map read = (Map) deserializer.readObject();
+        assertSame(read, read.get("self"));
+        assertEquals(list, deserializer.readObject());
+
+        // 在其它 ForkJoinPool 中调用时分段仍在 pool 中写出
+        ForkJoinPool outer = new ForkJoinPool(1);
+        byte[] data = outer.submit(() -> {
+            serializer.reset();
+            serializer.writeObject(list);
+            return serializer.getSerialData();
+        }).join();
+        assertEquals(list, new Deserializer(data).readObject());
+        outer.shutdown();
+        pool.shutdown();
+    }
+
+    @Test
+    void parallel_deserialize() throws IOException {
+        Wide wide = new Wide(20000);
+        Man[] men = wide.getMembers().toArray(new Man[0]);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Serializer serializer = new Serializer();
+        serializer.setParallel(pool, 1000);
+        serializer.writeObject(wide);
+        serializer.writeObject(men);
+        byte[] data = serializer.getSerialData();
+
+        Deserializer deserializer = new Deserializer(data);
+        deserializer.setParallel(pool);
+        Wide read = (Wide) deserializer.readObject();
+        assertEquals(wide.getMembers().toString(), read.getMembers().toString());
+        assertEquals(wide.getScores(), read.getScores());
+        assertEquals(Arrays.toString(men), Arrays.toString((Man[]) deserializer.readObject()));
+        assertEquals(null, deserializer.readObject());
+
+        // 流式读取时分段先读入各自的数组
+        deserializer = new Deserializer(new ByteArrayInputStream(data), 128);
+        deserializer.setParallel(pool);
+        read = (Wide) deserializer.readObject();
+        assertEquals(wide.getMembers().toString(), read.getMembers().toString());
+        assertEquals(Arrays.toString(men), Arrays.toString((Man[]) deserializer.readObject()));
+
+        // 快照的分段在共用映射的视图上解码，映射段很小，分段跨越段的边界
+        Path file = Files.createTempFile("ss", ".snapshot");
+        try {
+            Files.write(file, data);
+            try (SnapshotReader reader = new SnapshotReader(file, 999)) {
+                reader.setParallel(pool);
+                read = (Wide) reader.readObject();
+                assertEquals(wide.getMembers().toString(), read.getMembers().toString());
+                assertEquals(Arrays.toString(men), Arrays.toString((Man[]) reader.readObject()));
+                assertEquals(null, reader.readObject());
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads <<= 1) {
+            ForkJoinPool p = new ForkJoinPool(threads);
+            deserializer = new Deserializer();
+            deserializer.setParallel(p);
+            long start = System.nanoTime();
+            deserializer.reuse(data, 0, data.length).readObject();
+            System.out.println("threads: " + threads + ", parallel(ms):\t" + (System.nanoTime() - start) / 1000000);
+            p.shutdown();
+        }
+        pool.shutdown();
     }
 }
@@ -0,0 +1,50 @@
+package test;
+
+import cn.zzu.ss.core.SS;
+
+import java.io.Serializable;
+
+@SS
+public class Flat implements Serializable {
+    private boolean z;
+    private byte b;
+    private char c;
+    private short s;
+    private int i;
+    private float f;
+    private long j;
+    private double d;
+
+    public Flat() {
+    }
+
+    public Flat(int seed) {
+        z = (seed & 1) == 1;
+        b = (byte) seed;
+        c = (char) ('a' + seed % 26);
+        s = (short) -seed;
+        i = seed * 31;
+        f = seed / 3f;
+        j = (long) seed << 40;
+        d = seed / 7d;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Flat)) return false;
+        Flat flat = (Flat) o;
+        return z == flat.z && b == flat.b && c == flat.c && s == flat.s && i == flat.i && Float
+                .compare(flat.f, f) == 0 && j == flat.j && Double.compare(flat.d, d) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return "Flat{" + "z=" + z + ", b=" + b + ", c=" + c + ", s=" + s + ", i=" + i + ", f=" + f + ", j=" + j + ", d=" + d + '}';
+    }
+}
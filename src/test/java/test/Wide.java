@@ -0,0 +1,73 @@
+package test;
+
+import cn.zzu.ss.core.SS;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@SS
+public class Wide implements Serializable {
+    private long id;
+    private String title;
+    private Man owner;
+    private List<Man> members;
+    private Map<String, Integer> scores;
+    private double[] history;
+    private Man deputy;
+
+    public Wide() {
+    }
+
+    public Wide(int size) {
+        id = size;
+        title = "wide-" + size;
+        owner = new Man();
+        owner.setName("owner");
+        owner.setAge(40);
+        owner.setStrength(70);
+        members = new ArrayList<>();
+        scores = new HashMap<>();
+        history = new double[size];
+        for (int i = 0; i < size; i++) {
+            Man m = new Man();
+            m.setName("member-" + i);
+            m.setAge(i % 60);
+            m.setStrength(i);
+            members.add(m);
+            scores.put("member-" + i, i * 3);
+            history[i] = i / 7d;
+        }
+        deputy = members.get(size / 2);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Man getOwner() {
+        return owner;
+    }
+
+    public List<Man> getMembers() {
+        return members;
+    }
+
+    public Map<String, Integer> getScores() {
+        return scores;
+    }
+
+    public double[] getHistory() {
+        return history;
+    }
+
+    public Man getDeputy() {
+        return deputy;
+    }
+}